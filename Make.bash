@@ -5,11 +5,27 @@ JVM="java"
 if [ "$1" = "server" ]; then
     "$JC" -cp lib/gson-2.7.jar:lib/mysql-connector-java-5.0.8-bin.jar:src -d out src/main/ServerMain.java
     echo "Starting server"
-    "$JVM" -cp lib/gson-2.7.jar:lib/mysql-connector-java-5.0.8-bin.jar:src:out main.ServerMain
+    "$JVM" $JAVA_OPTS -cp lib/gson-2.7.jar:lib/mysql-connector-java-5.0.8-bin.jar:src:out main.ServerMain
 elif [ "$1" == "client" ]; then
     "$JC" -cp lib/gson-2.7.jar:lib/mysql-connector-java-5.0.8-bin.jar:src -d out src/main/ClientMain.java
     echo "Starting client"
     "$JVM" -cp lib/gson-2.7.jar:lib/mysql-connector-java-5.0.8-bin.jar:src:out main.ClientMain
+elif [ "$1" == "bench" ]; then
+    "$JC" -cp lib/gson-2.7.jar:lib/mysql-connector-java-5.0.8-bin.jar:src:bench -d out "bench/${2//.//}.java"
+    echo "Running $2"
+    "$JVM" $JAVA_OPTS -cp lib/gson-2.7.jar:lib/mysql-connector-java-5.0.8-bin.jar:src:bench:out "$2" "${@:3}"
+elif [ "$1" == "tablebase" ]; then
+    "$JC" -cp lib/gson-2.7.jar:lib/mysql-connector-java-5.0.8-bin.jar:src -d out src/game/ai/TablebaseGenerator.java
+    echo "Generating tablebase"
+    "$JVM" $JAVA_OPTS -cp lib/gson-2.7.jar:lib/mysql-connector-java-5.0.8-bin.jar:src:out game.ai.TablebaseGenerator "${@:2}"
+elif [ "$1" == "book" ]; then
+    "$JC" -cp lib/gson-2.7.jar:lib/mysql-connector-java-5.0.8-bin.jar:src -d out src/game/ai/OpeningBookBuilder.java
+    echo "Building opening book"
+    "$JVM" $JAVA_OPTS -cp lib/gson-2.7.jar:lib/mysql-connector-java-5.0.8-bin.jar:src:out game.ai.OpeningBookBuilder "${@:2}"
+elif [ "$1" == "tournament" ]; then
+    "$JC" -cp lib/gson-2.7.jar:lib/mysql-connector-java-5.0.8-bin.jar:src -d out src/game/ai/Tournament.java
+    echo "Running tournament"
+    "$JVM" $JAVA_OPTS -cp lib/gson-2.7.jar:lib/mysql-connector-java-5.0.8-bin.jar:src:out game.ai.Tournament "${@:2}"
 else
-    echo "Call this with client or server!"
+    echo "Call this with client, server, bench <class>, tablebase <directory> [pieces], book <file> <plies> <log>... or tournament <games> <first> <second> [threads] [maxPlies] [seed]!"
 fi
@@ -0,0 +1,113 @@
+package game;
+
+import com.google.gson.JsonElement;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static game.Color.RED;
+import static game.Color.WHITE;
+
+/**
+ * Microbenchmarks for the Game operations the server and client run on every move: move(Integer, Integer),
+ * move(Game), winner(), the board and JSON codecs, and the copy constructor. Positions come from seeded random play, so
+ * every run measures the same boards.
+ * <p>
+ * Run with ./Make.bash bench game.GameBenchmark [seed]
+ */
+public class GameBenchmark {
+    private static final int POSITIONS = 256;
+    private static final int MAX_PLIES = 40;
+    private static final int BATCH = 100000;
+
+    private final Game[] positions = new Game[POSITIONS];
+    // For each position: the first hop of a legal move, and the position after the whole move as a client sends it
+    private final int[] src = new int[POSITIONS];
+    private final int[] dst = new int[POSITIONS];
+    private final Game[] moved = new Game[POSITIONS];
+    private final String[] boards = new String[POSITIONS];
+    private final String[] encoded = new String[POSITIONS];
+    private final GameSnapshot[] snapshots = new GameSnapshot[POSITIONS];
+    private final JsonElement[] jsons = new JsonElement[POSITIONS];
+    // Fresh copies for the benchmarks that change the game, remade before each iteration
+    private final Game[] copies = new Game[BATCH];
+
+    /**
+     * Plays random legal moves from the start, keeping positions where the side to move still has a move
+     *
+     * @param seed Random seed
+     */
+    GameBenchmark(long seed) {
+        Player red = new Player("red", RED);
+        Player white = new Player("white", WHITE);
+        Random random = new Random(seed);
+        int[] buffer = new int[Moves.MAX_MOVES];
+        for (int i = 0; i < POSITIONS; ) {
+            Game game = new Game("bench", red, white, Game.newBoard(), red, new ArrayList<>());
+            int plies = random.nextInt(MAX_PLIES);
+            int count = game.legalMoves(buffer);
+            for (int ply = 0; ply < plies && count > 0; ply++) {
+                game.makeMove(buffer[random.nextInt(count)]);
+                count = game.legalMoves(buffer);
+            }
+            if (count == 0) {
+                continue;
+            }
+            // A copy so the position has a plain lastMove list and no undo stack
+            positions[i] = new Game(game);
+            int move = buffer[random.nextInt(count)];
+            List<Integer> path = Moves.path(move);
+            src[i] = path.get(0);
+            dst[i] = path.get(1);
+            game.makeMove(move);
+            moved[i] = new Game(game);
+            boards[i] = positions[i].serializeBoard();
+            encoded[i] = positions[i].encodeBoard();
+            snapshots[i] = positions[i].snapshot();
+            jsons[i] = positions[i].toJson();
+            i++;
+        }
+    }
+
+    private void copyPositions() {
+        for (int i = 0; i < BATCH; i++) {
+            copies[i] = new Game(positions[i % POSITIONS]);
+        }
+    }
+
+    public static void main(String[] args) {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : 451;
+        GameBenchmark bench = new GameBenchmark(seed);
+        Game[] positions = bench.positions;
+        Game[] copies = bench.copies;
+        Runnable none = () -> {
+        };
+        System.out.println("Seed " + seed + ", " + POSITIONS + " positions, " + BATCH + " operations per iteration");
+        Microbenchmark.header();
+        Microbenchmark.run("move(Integer,Integer)", BATCH, bench::copyPositions,
+                i -> copies[i].move(bench.src[i % POSITIONS], bench.dst[i % POSITIONS]).ordinal());
+        Microbenchmark.run("move(Game)", BATCH, bench::copyPositions,
+                i -> copies[i].move(bench.moved[i % POSITIONS]).ordinal());
+        Microbenchmark.run("GameSnapshot.move", BATCH, none,
+                i -> bench.snapshots[i % POSITIONS].move(bench.src[i % POSITIONS], bench.dst[i % POSITIONS])
+                        .getStatus().ordinal());
+        // Fresh copies of positions whose mobility has not been worked out yet, so winner() does the work once
+        Microbenchmark.run("winner", BATCH, bench::copyPositions,
+                i -> copies[i].winner() == null ? 0 : 1);
+        Microbenchmark.run("serializeBoard", BATCH, none,
+                i -> positions[i % POSITIONS].serializeBoard().length());
+        Microbenchmark.run("deserializeBoard", BATCH, none,
+                i -> Game.deserializeBoard(bench.boards[i % POSITIONS]).size());
+        Microbenchmark.run("encodeBoard", BATCH, none,
+                i -> positions[i % POSITIONS].encodeBoard().length());
+        Microbenchmark.run("deserializeBoard(compact)", BATCH, none,
+                i -> Game.deserializeBoard(bench.encoded[i % POSITIONS]).size());
+        Microbenchmark.run("toJson", BATCH, none,
+                i -> positions[i % POSITIONS].toJson().hashCode());
+        Microbenchmark.run("fromJson", BATCH, none,
+                i -> Game.fromJson(bench.jsons[i % POSITIONS]).positionKey());
+        Microbenchmark.run("new Game(Game)", BATCH, none,
+                i -> new Game(positions[i % POSITIONS]).positionKey());
+    }
+}
@@ -0,0 +1,58 @@
+package game;
+
+import java.util.function.IntToLongFunction;
+
+/**
+ * Small stand-in for JMH, which the project cannot pull in without a build tool. Each benchmark runs warm-up
+ * iterations and then measured ones. Every iteration first runs an untimed set-up, then times one batch of
+ * operations. Results are folded into a volatile sink so the JIT cannot drop the work. Reports the mean time per
+ * operation with its standard deviation over the measured iterations.
+ */
+public final class Microbenchmark {
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int MEASURED_ITERATIONS = 10;
+    public static volatile long sink;
+
+    private Microbenchmark() {
+    }
+
+    public static void header() {
+        System.out.printf("%-28s %5s %12s %10s  %s%n", "Benchmark", "Cnt", "Score", "Error", "Units");
+    }
+
+    /**
+     * Runs and reports one benchmark
+     *
+     * @param name      Name to print
+     * @param batch     Operations per iteration
+     * @param setUp     Untimed work before each iteration, such as making fresh copies for the operations to mutate
+     * @param operation Operation number i of the batch, returning any value derived from its result
+     */
+    public static void run(String name, int batch, Runnable setUp, IntToLongFunction operation) {
+        double[] nanosPerOp = new double[MEASURED_ITERATIONS];
+        for (int iteration = 0; iteration < WARMUP_ITERATIONS + MEASURED_ITERATIONS; iteration++) {
+            setUp.run();
+            // Collect the set-up's garbage now rather than in the middle of the timed batch
+            System.gc();
+            long consumed = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < batch; i++) {
+                consumed += operation.applyAsLong(i);
+            }
+            long elapsed = System.nanoTime() - start;
+            sink += consumed;
+            if (iteration >= WARMUP_ITERATIONS) {
+                nanosPerOp[iteration - WARMUP_ITERATIONS] = (double) elapsed / batch;
+            }
+        }
+        double mean = 0;
+        for (double value : nanosPerOp) {
+            mean += value / nanosPerOp.length;
+        }
+        double variance = 0;
+        for (double value : nanosPerOp) {
+            variance += (value - mean) * (value - mean) / (nanosPerOp.length - 1);
+        }
+        System.out.printf("%-28s %5d %12.1f %10.1f  ns/op%n", name, MEASURED_ITERATIONS, mean, Math.sqrt(variance));
+    }
+}
@@ -0,0 +1,51 @@
+package game;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Leaves per second of perft over the reference positions, on the calling thread and with fork-join at 1, 2, 4 and 8
+ * workers. This is the standard throughput number for changes to move generation or makeMove/unmakeMove.
+ * <p>
+ * Run with ./Make.bash bench game.PerftBenchmark [depth]
+ */
+public class PerftBenchmark {
+    private static final int[] THREADS = {1, 2, 4, 8};
+
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 7;
+        System.out.println("Cores: " + Runtime.getRuntime().availableProcessors() + ", depth " + depth);
+        // Warm up the JIT before timing anything
+        for (String position : Perft.REFERENCE) {
+            Perft.perft(Perft.position(position), Math.min(depth, 5));
+        }
+        long total = 0;
+        long nanos = 0;
+        for (String position : Perft.REFERENCE) {
+            Game game = Perft.position(position);
+            long start = System.nanoTime();
+            long leaves = Perft.perft(game, depth);
+            long elapsed = System.nanoTime() - start;
+            total += leaves;
+            nanos += elapsed;
+            System.out.printf("%s %,14d leaves %8.1f ms %,14d leaves/s%n", position, leaves, elapsed / 1e6,
+                    leaves * 1000000000L / elapsed);
+        }
+        System.out.printf("single thread: %,d leaves %.1f ms %,d leaves/s%n", total, nanos / 1e6,
+                total * 1000000000L / nanos);
+        for (int threads : THREADS) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            long start = System.nanoTime();
+            long leaves = 0;
+            for (String position : Perft.REFERENCE) {
+                leaves += Perft.parallel(Perft.position(position), depth, pool);
+            }
+            long elapsed = System.nanoTime() - start;
+            pool.shutdown();
+            if (leaves != total) {
+                throw new IllegalStateException("Fork-join perft counted " + leaves + " leaves, expected " + total);
+            }
+            System.out.printf("fork-join %d: %.1f ms %,d leaves/s speedup %.2fx%n", threads, elapsed / 1e6,
+                    leaves * 1000000000L / elapsed, (double) nanos / elapsed);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package game.ai;
+
+import game.Game;
+import game.Microbenchmark;
+import game.Moves;
+import game.Player;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static game.Color.RED;
+import static game.Color.WHITE;
+
+/**
+ * Cost of static evaluation per node over a fixed set of positions reached by seeded random play. Compares the full
+ * evaluation read from the incrementally kept square score against the same evaluation worked out from scratch and
+ * against the plain material count the engine used before, and shows what the incremental hook adds to a search node
+ * (makeMove, evaluate, unmakeMove).
+ * <p>
+ * Run with ./Make.bash bench game.ai.EvaluatorBenchmark [seed]
+ */
+public class EvaluatorBenchmark {
+    private static final int POSITIONS = 256;
+    private static final int MAX_PLIES = 60;
+    private static final int BATCH = 100000;
+
+    public static void main(String[] args) {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : 451;
+        Evaluator evaluator = Evaluator.DEFAULT;
+        Game[] attached = new Game[POSITIONS];
+        Game[] detached = new Game[POSITIONS];
+        int[] moves = new int[POSITIONS];
+        Player red = new Player("red", RED);
+        Player white = new Player("white", WHITE);
+        Random random = new Random(seed);
+        int[] buffer = new int[Moves.MAX_MOVES];
+        for (int i = 0; i < POSITIONS; ) {
+            Game game = new Game("bench", red, white, Game.newBoard(), red, new ArrayList<>());
+            int plies = random.nextInt(MAX_PLIES);
+            int count = game.legalMoves(buffer);
+            for (int ply = 0; ply < plies && count > 0; ply++) {
+                game.makeMove(buffer[random.nextInt(count)]);
+                count = game.legalMoves(buffer);
+            }
+            if (count == 0) {
+                continue;
+            }
+            detached[i] = new Game(game);
+            attached[i] = new Game(game);
+            evaluator.attach(attached[i]);
+            moves[i] = buffer[random.nextInt(count)];
+            i++;
+        }
+        Runnable none = () -> {
+        };
+        System.out.println("Seed " + seed + ", " + POSITIONS + " positions, " + BATCH + " operations per iteration, "
+                + evaluator);
+        Microbenchmark.header();
+        Microbenchmark.run("material only", BATCH, none, i -> {
+            Game game = detached[i % POSITIONS];
+            int kings = game.getKings();
+            return 100 * (Integer.bitCount(game.getBitboard(RED)) - Integer.bitCount(game.getBitboard(WHITE)))
+                    + 50 * (Integer.bitCount(game.getBitboard(RED) & kings)
+                    - Integer.bitCount(game.getBitboard(WHITE) & kings));
+        });
+        Microbenchmark.run("evaluate incremental", BATCH, none, i -> evaluator.evaluate(attached[i % POSITIONS]));
+        Microbenchmark.run("moveCount", BATCH, none, i -> attached[i % POSITIONS].moveCount(RED));
+        Microbenchmark.run("evaluate from scratch", BATCH, none, i -> evaluator.evaluate(detached[i % POSITIONS]));
+        Microbenchmark.run("node without hook", BATCH, none, i -> {
+            Game game = detached[i % POSITIONS];
+            game.makeMove(moves[i % POSITIONS]);
+            int score = evaluator.evaluate(game);
+            game.unmakeMove();
+            return score;
+        });
+        Microbenchmark.run("node with hook", BATCH, none, i -> {
+            Game game = attached[i % POSITIONS];
+            game.makeMove(moves[i % POSITIONS]);
+            int score = evaluator.evaluate(game);
+            game.unmakeMove();
+            return score;
+        });
+    }
+}
@@ -0,0 +1,52 @@
+package game.ai;
+
+import game.Game;
+
+import java.util.List;
+
+/**
+ * Effect of killer and history move ordering on the alpha-beta search, over the same positions as
+ * ParallelSearchBenchmark. Each position is searched single-threaded to a fixed depth with ordering off and on, every
+ * run with a fresh transposition table. Reports nodes, time, the average branching factor (moves searched per
+ * expanded node) and the effective branching factor (nodes at the full depth over nodes one ply shallower).
+ * <p>
+ * Run with ./Make.bash bench game.ai.MoveOrderingBenchmark [depth]
+ */
+public class MoveOrderingBenchmark {
+    private static final int TABLE_MEGABYTES = 64;
+
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        List<Game> positions = ParallelSearchBenchmark.positions();
+        System.out.println("Depth " + depth + ", " + positions.size() + " positions");
+        // Warm up the JIT before timing anything
+        run(positions, Math.min(depth, 6), true);
+        run(positions, Math.min(depth, 6), false);
+        for (boolean ordering : new boolean[]{false, true}) {
+            double[] shallow = run(positions, depth - 1, ordering);
+            double[] full = run(positions, depth, ordering);
+            System.out.printf("ordering %-3s: %10.1f ms  %,12d nodes  branching %.2f  effective branching %.2f%n",
+                    ordering ? "on" : "off", full[0] / 1e6, (long) full[1], full[2], full[1] / shallow[1]);
+        }
+    }
+
+    /**
+     * Searches every position to a fixed depth
+     *
+     * @return Total nanoseconds, total nodes and mean branching factor
+     */
+    private static double[] run(List<Game> positions, int depth, boolean ordering) {
+        double nanos = 0;
+        double nodes = 0;
+        double branching = 0;
+        for (Game position : positions) {
+            Engine engine = new Engine(Long.MAX_VALUE, depth, new TranspositionTable(TABLE_MEGABYTES));
+            engine.setOrdering(ordering);
+            SearchResult result = engine.search(position);
+            nanos += result.getElapsedNanos();
+            nodes += result.getNodes();
+            branching += result.getBranchingFactor() / positions.size();
+        }
+        return new double[]{nanos, nodes, branching};
+    }
+}
@@ -0,0 +1,87 @@
+package game.ai;
+
+import game.Game;
+import game.Moves;
+import game.Player;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static game.Color.RED;
+import static game.Color.WHITE;
+
+/**
+ * Time-to-depth of the lazy SMP search at 1, 2, 4 and 8 threads over a fixed set of positions. Every run gets a fresh
+ * transposition table of the same size so threads only help each other, not later runs.
+ * <p>
+ * Run with ./Make.bash bench game.ai.ParallelSearchBenchmark [depth]
+ */
+public class ParallelSearchBenchmark {
+    private static final int[] THREADS = {1, 2, 4, 8};
+    private static final int TABLE_MEGABYTES = 64;
+    private static final long SEED = 451;
+
+    /**
+     * Builds the start position plus positions reached by seeded random play, so every run sees the same set
+     *
+     * @return Benchmark positions
+     */
+    static List<Game> positions() {
+        Player red = new Player("red", RED);
+        Player white = new Player("white", WHITE);
+        Random random = new Random(SEED);
+        int[] buffer = new int[Moves.MAX_MOVES];
+        List<Game> positions = new ArrayList<>();
+        for (int plies : new int[]{0, 6, 12, 20}) {
+            Game game = new Game("bench", red, white, Game.newBoard(), red, new ArrayList<>());
+            for (int ply = 0; ply < plies; ply++) {
+                int count = game.legalMoves(buffer);
+                if (count == 0) {
+                    break;
+                }
+                game.makeMove(buffer[random.nextInt(count)]);
+            }
+            positions.add(new Game(game));
+        }
+        return positions;
+    }
+
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 12;
+        List<Game> positions = positions();
+        System.out.println("Cores: " + Runtime.getRuntime().availableProcessors() + ", depth " + depth
+                + ", " + positions.size() + " positions");
+        // Warm up the JIT before timing anything
+        run(positions, Math.min(depth, 8), 1);
+        long baseline = 0;
+        for (int threads : THREADS) {
+            long[] totals = run(positions, depth, threads);
+            if (threads == 1) {
+                baseline = totals[0];
+            }
+            System.out.printf("%d threads: %8.1f ms  speedup %.2fx  %,d nodes  %,d nodes/s%n",
+                    threads, totals[0] / 1e6, (double) baseline / totals[0], totals[1],
+                    totals[1] * 1000000000L / totals[0]);
+        }
+    }
+
+    /**
+     * Searches every position to a fixed depth
+     *
+     * @return Total nanoseconds and total nodes
+     */
+    private static long[] run(List<Game> positions, int depth, int threads) {
+        long nanos = 0;
+        long nodes = 0;
+        for (Game position : positions) {
+            Engine engine = new Engine(Long.MAX_VALUE / 1000000L, depth, new TranspositionTable(TABLE_MEGABYTES),
+                    threads);
+            SearchResult result = engine.search(position);
+            engine.shutdown();
+            nanos += result.getElapsedNanos();
+            nodes += result.getNodes();
+        }
+        return new long[]{nanos, nodes};
+    }
+}
@@ -0,0 +1,152 @@
+package network;
+
+import network.messages.Ack;
+import network.messages.Packet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+
+/**
+ * Many concurrent connections against each way of running the server: a platform thread per connection, a virtual
+ * thread per connection, and the NIO selector server. Every client connects and stays connected, then every client
+ * sends one request and reads its response while all the others are still open. Reports the time to connect and to
+ * answer everyone, the server's peak thread count and the heap in use with everyone connected.
+ * <p>
+ * Plain sockets on the loopback, so the numbers are about threading rather than TLS. The requests are Acks, which the
+ * server echoes without touching the database. Clients and server share the process, so each connection takes two
+ * file descriptors; raise the limit with ulimit -n for 10000 connections. Virtual threads need Java 21 and are skipped
+ * on older JVMs.
+ * <p>
+ * Run with ./Make.bash bench network.ConnectionsBenchmark [connections] [modes...]
+ */
+public class ConnectionsBenchmark {
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        String[] modes = args.length > 1 ? Arrays.copyOfRange(args, 1, args.length)
+                : new String[]{"threads", "virtual", "nio"};
+        for (String mode : modes) {
+            run(mode, connections);
+        }
+    }
+
+    private static void run(String mode, int connections) throws IOException, InterruptedException {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+        int threadsBefore = threads.getThreadCount();
+        threads.resetPeakThreadCount();
+
+        ServerSocket listener = null;
+        NioServer nio = null;
+        RequestExecutor requests = new RequestExecutor(4, connections);
+        ExecutorService executor = null;
+        Thread acceptor = null;
+        int port;
+        if (mode.equals("nio")) {
+            nio = new NioServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), null, 1, requests);
+            port = nio.getPort();
+        } else {
+            listener = new ServerSocket(0, 4096, InetAddress.getLoopbackAddress());
+            port = listener.getLocalPort();
+            if (mode.equals("virtual")) {
+                executor = Server.virtualThreadExecutor();
+                if (executor == null) {
+                    System.out.println("virtual: skipped, virtual threads need Java 21");
+                    listener.close();
+                    return;
+                }
+                acceptor = accept(listener, executor::execute);
+            } else {
+                acceptor = accept(listener, ServerThread::start);
+            }
+        }
+
+        List<Socket> clients = new ArrayList<>(connections);
+        try {
+            long start = System.nanoTime();
+            for (int i = 0; i < connections; i++) {
+                clients.add(new Socket(InetAddress.getLoopbackAddress(), port));
+            }
+            long connected = System.nanoTime();
+            for (int i = 0; i < connections; i++) {
+                OutputStream out = clients.get(i).getOutputStream();
+                out.write((new Packet("", new Ack("ping", true), i + 1).toJson() + "\n")
+                        .getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            }
+            for (int i = 0; i < connections; i++) {
+                Packet response = Packet.fromJson(readLine(clients.get(i).getInputStream()));
+                if (response == null || response.getId() != i + 1) {
+                    throw new IllegalStateException("Wrong response on connection " + i);
+                }
+            }
+            long answered = System.nanoTime();
+            System.gc();
+            long heap = runtime.totalMemory() - runtime.freeMemory() - heapBefore;
+            System.out.printf("%-8s %6d connections: connect %7.1f ms, answer all %7.1f ms (%,.0f requests/s), "
+                            + "peak threads %5d, heap %6.1f MB (%.1f KB per connection)%n", mode + ":",
+                    connections, (connected - start) / 1e6, (answered - connected) / 1e6,
+                    connections * 1e9 / (answered - connected), threads.getPeakThreadCount() - threadsBefore,
+                    heap / 1048576.0, heap / 1024.0 / connections);
+        } finally {
+            for (Socket client : clients) {
+                client.close();
+            }
+            if (nio != null) {
+                nio.close();
+            }
+            if (listener != null) {
+                listener.close();
+                acceptor.join();
+            }
+            requests.shutdown();
+            if (executor != null) {
+                // Handlers end by themselves once their client hangs up
+                executor.shutdown();
+            }
+        }
+        // Let the server side notice the hang ups before the next mode is measured
+        Thread.sleep(1000);
+    }
+
+    private static Thread accept(ServerSocket listener, Consumer<ServerThread> handler) {
+        Thread acceptor = new Thread(() -> {
+            try {
+                Server.serve(listener, handler);
+            } catch (IOException e) {
+                // Listener closed at the end of the run
+            }
+        }, "benchmark-acceptor");
+        acceptor.start();
+        return acceptor;
+    }
+
+    /**
+     * Reads one line without a buffered reader, whose buffer per connection would dwarf the server's memory use
+     */
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        for (int b = in.read(); b != '\n'; b = in.read()) {
+            if (b < 0) {
+                throw new IOException("Server hung up");
+            }
+            line.write(b);
+        }
+        return new String(line.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,131 @@
+package network;
+
+import network.messages.Ack;
+import network.messages.Packet;
+
+import javax.net.ssl.SSLSocket;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Properties;
+
+/**
+ * Cost of a new TLS connection with session resumption on and off, for the protocol and suite combinations the
+ * server accepts. Each connection does a handshake, one request and a hang up, which is what a one-shot client pays
+ * for every request. Reports handshake and request times, and for comparison the request time on a connection that
+ * stays open, as the persistent client uses.
+ * <p>
+ * Runs against the NIO server on the loopback. The keystore defaults to the test key, or give another with its
+ * password; it serves as the client's truststore too.
+ * <p>
+ * Run with ./Make.bash bench network.HandshakeBenchmark [connections] [keystore] [password]
+ */
+public class HandshakeBenchmark {
+    private static final String[][] VARIANTS = {
+            {"TLS 1.3 AES-GCM", "TLSv1.3", TlsConfig.DEFAULT_CIPHER_SUITES},
+            {"TLS 1.2 ECDHE AES-GCM", "TLSv1.2", "TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256"},
+            {"TLS 1.2 RSA AES-CBC (old)", "TLSv1.2", TlsConfig.LEGACY_CIPHER_SUITE},
+    };
+
+    public static void main(String[] args) throws IOException {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        String keyStore = args.length > 1 ? args[1] : "test/network/test.jks";
+        String password = args.length > 2 ? args[2] : "checkers";
+        RequestExecutor requests = new RequestExecutor(2, 64);
+        NioServer server = new NioServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+                config(keyStore, password, "TLSv1.3,TLSv1.2", TlsConfig.DEFAULT_CIPHER_SUITES, true), 1, requests);
+        try {
+            System.out.println(connections + " connections per run");
+            for (String[] variant : VARIANTS) {
+                for (boolean resumption : new boolean[]{false, true}) {
+                    TlsConfig client = config(keyStore, password, variant[1], variant[2], resumption);
+                    // Warm up the JIT, and the session cache when resumption is on
+                    run(client, server.getPort(), Math.max(1, connections / 5));
+                    double[] result = run(client, server.getPort(), connections);
+                    System.out.printf("%-26s resumption %-3s: handshake p50 %6.2f ms, p99 %6.2f ms, "
+                                    + "request p50 %5.2f ms%n", variant[0], resumption ? "on" : "off", result[0],
+                            result[1], result[2]);
+                }
+            }
+            TlsConfig client = config(keyStore, password, "TLSv1.3", TlsConfig.DEFAULT_CIPHER_SUITES, true);
+            System.out.printf("%-26s                : request p50 %5.2f ms%n", "Persistent connection",
+                    persistent(client, server.getPort(), connections));
+        } finally {
+            server.close();
+            requests.shutdown();
+        }
+    }
+
+    private static TlsConfig config(String keyStore, String password, String protocols, String suites,
+                                    boolean resumption) {
+        Properties properties = new Properties();
+        properties.setProperty("checkers.tls.keyStore", keyStore);
+        properties.setProperty("checkers.tls.keyStorePassword", password);
+        properties.setProperty("checkers.tls.trustStore", keyStore);
+        properties.setProperty("checkers.tls.trustStorePassword", password);
+        properties.setProperty("checkers.tls.protocols", protocols);
+        properties.setProperty("checkers.tls.cipherSuites", suites);
+        properties.setProperty("checkers.tls.resumption", String.valueOf(resumption));
+        return new TlsConfig(properties);
+    }
+
+    /**
+     * Connects, handshakes, makes one request and hangs up, over and over
+     *
+     * @return Median and 99th percentile handshake milliseconds, and median request milliseconds
+     */
+    private static double[] run(TlsConfig client, int port, int connections) throws IOException {
+        long[] handshakes = new long[connections];
+        long[] requests = new long[connections];
+        for (int i = 0; i < connections; i++) {
+            long start = System.nanoTime();
+            try (SSLSocket socket = client.clientSocket("localhost", port)) {
+                socket.startHandshake();
+                long handshaken = System.nanoTime();
+                request(socket, i + 1);
+                handshakes[i] = handshaken - start;
+                requests[i] = System.nanoTime() - handshaken;
+            }
+        }
+        return new double[]{percentile(handshakes, 50), percentile(handshakes, 99), percentile(requests, 50)};
+    }
+
+    /**
+     * @return Median request milliseconds on one connection kept open
+     */
+    private static double persistent(TlsConfig client, int port, int count) throws IOException {
+        long[] requests = new long[count];
+        try (SSLSocket socket = client.clientSocket("localhost", port)) {
+            for (int i = 0; i < count; i++) {
+                long start = System.nanoTime();
+                request(socket, i + 1);
+                requests[i] = System.nanoTime() - start;
+            }
+        }
+        return percentile(requests, 50);
+    }
+
+    private static void request(SSLSocket socket, long id) throws IOException {
+        // Not kept between requests, so nothing is read ahead and lost
+        PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8),
+                1);
+        out.write(new Packet("", new Ack("ping", true), id).toJson() + "\n");
+        out.flush();
+        Packet response = Packet.fromJson(in.readLine());
+        if (response == null || response.getId() != id) {
+            throw new IllegalStateException("Wrong response to request " + id);
+        }
+    }
+
+    private static double percentile(long[] nanos, double percentile) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * percentile / 100))] / 1e6;
+    }
+}
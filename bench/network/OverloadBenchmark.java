@@ -0,0 +1,61 @@
+package network;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Answer times under overload with and without admission control. Requests that each hold a worker for a fixed
+ * service time, standing in for a database round trip, are offered at a steady rate above what the workers can
+ * serve. With a short queue the excess is turned away and the requests that are let in keep a short p99. With a
+ * queue long enough to take everything, nothing is turned away but the queue and every answer time grow for as long
+ * as the overload lasts.
+ * <p>
+ * Run with ./Make.bash bench network.OverloadBenchmark [workers] [serviceMillis] [overload] [seconds] [queue]
+ */
+public class OverloadBenchmark {
+    public static void main(String[] args) throws InterruptedException {
+        int workers = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int serviceMillis = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        double overload = args.length > 2 ? Double.parseDouble(args[2]) : 2;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+        int queue = args.length > 4 ? Integer.parseInt(args[4]) : workers * 4;
+        double capacity = workers * 1000.0 / serviceMillis;
+        System.out.printf("%d workers at %d ms per request serve %.0f requests/s, offering %.0f requests/s "
+                + "for %d s%n", workers, serviceMillis, capacity, capacity * overload, seconds);
+        run("bounded", workers, queue, serviceMillis, capacity * overload, seconds);
+        // Far more than the run can offer, so nothing is ever turned away
+        run("unbounded", workers, 1 << 22, serviceMillis, capacity * overload, seconds);
+    }
+
+    private static void run(String name, int workers, int queue, int serviceMillis, double rate, int seconds)
+            throws InterruptedException {
+        RequestExecutor requests = new RequestExecutor(workers, queue);
+        long interval = (long) (1e9 / rate);
+        long start = System.nanoTime();
+        long end = start + seconds * 1000000000L;
+        int maxDepth = 0;
+        // Open loop: requests arrive on schedule however far behind the server is
+        for (long next = start; next < end; next += interval) {
+            long now = System.nanoTime();
+            if (next > now) {
+                LockSupport.parkNanos(next - now);
+            }
+            requests.execute("", () -> {
+                LockSupport.parkNanos(serviceMillis * 1000000L);
+                return "";
+            }, output -> {
+            });
+            maxDepth = Math.max(maxDepth, requests.queueDepth());
+        }
+        long offered = requests.getSubmitted() + requests.getRejected();
+        // Let the queue drain, so every request let in counts towards the answer times
+        while (requests.getCompleted() < requests.getSubmitted()) {
+            Thread.sleep(10);
+        }
+        requests.shutdown();
+        System.out.printf("%-9s queue %7d: %6d offered, %6d answered, %6d turned away, max depth %6d, "
+                        + "p50 %8.1f ms, p99 %8.1f ms, max wait %8.1f ms%n", name, queue, offered,
+                requests.getCompleted(), requests.getRejected(), maxDepth, requests.percentileMillis(50),
+                requests.percentileMillis(99), requests.maxWaitMillis());
+        Thread.sleep(500);
+    }
+}
@@ -7,6 +7,8 @@ import game.Player;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 import static game.Color.RED;
 import static game.Color.WHITE;
@@ -21,12 +23,35 @@ public final class DBWrapper {
     private static final String database = "Checker";
     private static final String port = "3306";
     public static String ip = "127.0.0.1";
+    // Most connections open at once, set with -Dcheckers.db.connections=N. With a virtual thread per client there is
+    // no other limit, and the MySQL driver pins its carrier thread for the length of every query, so this also
+    // bounds how many carriers can be pinned at once. Waiting for a permit parks without pinning.
+    private static final Semaphore CONNECTIONS = new Semaphore(Integer.getInteger("checkers.db.connections", 16), true);
+    private static final long CONNECTION_WAIT_SECONDS = 30;
 
     private DBWrapper() {
     }
 
+    /**
+     * Opens a connection once one of the permits is free. Every connection must be given back with close().
+     *
+     * @throws SQLException when the database cannot be reached, or no permit came free in time.
+     */
     protected static Connection connect() throws SQLException {
-        return DriverManager.getConnection("jdbc:mysql://" + ip + ":" + port + "/" + database, user, password);
+        try {
+            if (!CONNECTIONS.tryAcquire(CONNECTION_WAIT_SECONDS, TimeUnit.SECONDS)) {
+                throw new SQLException("Timed out waiting for a database connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted waiting for a database connection", e);
+        }
+        try {
+            return DriverManager.getConnection("jdbc:mysql://" + ip + ":" + port + "/" + database, user, password);
+        } catch (SQLException | RuntimeException e) {
+            CONNECTIONS.release();
+            throw e;
+        }
     }
 
     protected static void close(Connection conn) {
@@ -36,6 +61,8 @@ public final class DBWrapper {
             } catch (SQLException e) {
                 printSQLException(e);
                 System.out.println("Failed to close database connection");
+            } finally {
+                CONNECTIONS.release();
             }
         }
     }
@@ -211,7 +238,7 @@ public final class DBWrapper {
         Connection conn = null;
         String sql = "INSERT INTO Games (name, p1, p2, state, turn, red) VALUES (?, ?, ?, ?, ?, ?) " +
                 "ON DUPLICATE KEY UPDATE p1=?, p2=?, state=?, turn=?, red=?";
-        String state = game.serializeBoard();
+        String state = game.encodeBoard();
         String red = game.red().getName();
         try {
             conn = connect();
@@ -0,0 +1,87 @@
+package database;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * Append-only text log of finished turns. The Games table only keeps each game's current board, so this is where the
+ * moves that led there are kept, for mining into the opening book.
+ * <p>
+ * One line per turn: the game name, a space, then the squares the disk visited joined with '-', such as "game1 9-13".
+ * Game names never contain whitespace.
+ */
+public final class MoveLog {
+    /**
+     * Log file, or null to log nothing. Set once at server start.
+     */
+    public static Path path = null;
+    private static final ReentrantLock LOCK = new ReentrantLock();
+
+    private MoveLog() {
+    }
+
+    /**
+     * Appends one finished turn to the log, if logging is on. Failures are printed and otherwise ignored, since
+     * losing a log line must never fail a move.
+     *
+     * @param game    Game name
+     * @param squares Source square followed by every square landed on, as in Game.lastMove
+     */
+    public static void append(String game, List<Integer> squares) {
+        if (path == null || squares.size() < 2) {
+            return;
+        }
+        // A lock rather than synchronized, so a virtual thread waiting on the file does not pin its carrier
+        LOCK.lock();
+        try (Writer out = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND)) {
+            out.write(format(game, squares) + "\n");
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.out.println("Failed to write move log " + path);
+        } finally {
+            LOCK.unlock();
+        }
+    }
+
+    public static String format(String game, List<Integer> squares) {
+        return game + " " + squares.stream().map(Object::toString).collect(Collectors.joining("-"));
+    }
+
+    /**
+     * @param line Log line
+     * @return Game name, or null if the line is malformed
+     */
+    public static String parseGame(String line) {
+        int space = line.indexOf(' ');
+        return space > 0 ? line.substring(0, space) : null;
+    }
+
+    /**
+     * @param line Log line
+     * @return Squares visited, or null if the line is malformed
+     */
+    public static List<Integer> parseSquares(String line) {
+        int space = line.indexOf(' ');
+        if (space <= 0) {
+            return null;
+        }
+        List<Integer> squares = new ArrayList<>();
+        try {
+            for (String square : line.substring(space + 1).trim().split("-")) {
+                squares.add(Integer.valueOf(square));
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return squares;
+    }
+}
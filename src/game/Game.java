@@ -6,14 +6,20 @@ import network.Client;
 import network.messages.Message;
 import network.messages.MessageTypes;
 
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import static game.Color.RED;
+import static game.Color.WHITE;
 import static game.Disk.*;
 import static game.MoveStatus.*;
 
@@ -22,12 +28,125 @@ public class Game implements Message {
     private static Integer columns = (int) Math.sqrt(boardSize / 2);
     private static Integer width = columns * 2;
     private static Integer startRows = 3;
+    // Diagonal directions used to index the lookup tables. The first two move towards square 0 (white's way), the
+    // last two towards the last square (red's way).
+    static final int DIRECTIONS = 4;
+    private static final int[] ROW_STEP = {-1, -1, 1, 1};
+    private static final int[] COLUMN_STEP = {-1, 1, -1, 1};
+    // Per-square lookup tables, indexed [square][direction]. -1 where the move would leave the board.
+    static final int[][] ADJACENT = new int[boardSize][DIRECTIONS];
+    static final int[][] LANDING = new int[boardSize][DIRECTIONS];
+    static final int[][] JUMPED = new int[boardSize][DIRECTIONS];
+    // The same tables grouped for whole-board bit shifts, indexed [direction][group]. Every square in a group's source
+    // mask reaches its neighbour (or landing square) by the same shift, which depends on the row parity.
+    private static final int[][] STEP_SOURCES = new int[DIRECTIONS][];
+    private static final int[][] STEP_SHIFT = new int[DIRECTIONS][];
+    private static final int[][] JUMP_SOURCES = new int[DIRECTIONS][];
+    private static final int[][] JUMP_OVER_SHIFT = new int[DIRECTIONS][];
+    private static final int[][] JUMP_LAND_SHIFT = new int[DIRECTIONS][];
+    // Zobrist keys, indexed [red man, red king, white man, white king][square]. Generated from a fixed seed so keys
+    // stay the same between runs and can be stored.
+    private static final long[][] ZOBRIST = new long[4][boardSize];
+    private static final long[] ZOBRIST_CHAIN = new long[boardSize];
+    private static final long ZOBRIST_WHITE_TURN;
+
+    static {
+        for (int square = 0; square < boardSize; square++) {
+            for (int direction = 0; direction < DIRECTIONS; direction++) {
+                ADJACENT[square][direction] = offset(square, direction, 1);
+                LANDING[square][direction] = offset(square, direction, 2);
+                JUMPED[square][direction] = LANDING[square][direction] < 0 ? -1 : ADJACENT[square][direction];
+            }
+        }
+        for (int direction = 0; direction < DIRECTIONS; direction++) {
+            List<Integer> stepSources = new ArrayList<>();
+            List<Integer> stepShifts = new ArrayList<>();
+            List<Integer> jumpSources = new ArrayList<>();
+            List<Integer> jumpOver = new ArrayList<>();
+            List<Integer> jumpLand = new ArrayList<>();
+            for (int square = 0; square < boardSize; square++) {
+                int adjacent = ADJACENT[square][direction];
+                int landing = LANDING[square][direction];
+                if (adjacent >= 0) {
+                    int group = stepShifts.indexOf(adjacent - square);
+                    if (group < 0) {
+                        stepShifts.add(adjacent - square);
+                        stepSources.add(0);
+                        group = stepShifts.size() - 1;
+                    }
+                    stepSources.set(group, stepSources.get(group) | 1 << square);
+                }
+                if (landing >= 0) {
+                    int group = -1;
+                    for (int i = 0; i < jumpOver.size(); i++) {
+                        if (jumpOver.get(i) == adjacent - square && jumpLand.get(i) == landing - square) {
+                            group = i;
+                        }
+                    }
+                    if (group < 0) {
+                        jumpOver.add(adjacent - square);
+                        jumpLand.add(landing - square);
+                        jumpSources.add(0);
+                        group = jumpSources.size() - 1;
+                    }
+                    jumpSources.set(group, jumpSources.get(group) | 1 << square);
+                }
+            }
+            STEP_SOURCES[direction] = stepSources.stream().mapToInt(Integer::intValue).toArray();
+            STEP_SHIFT[direction] = stepShifts.stream().mapToInt(Integer::intValue).toArray();
+            JUMP_SOURCES[direction] = jumpSources.stream().mapToInt(Integer::intValue).toArray();
+            JUMP_OVER_SHIFT[direction] = jumpOver.stream().mapToInt(Integer::intValue).toArray();
+            JUMP_LAND_SHIFT[direction] = jumpLand.stream().mapToInt(Integer::intValue).toArray();
+        }
+        Random random = new Random(451);
+        for (long[] keys : ZOBRIST) {
+            for (int square = 0; square < boardSize; square++) {
+                keys[square] = random.nextLong();
+            }
+        }
+        for (int square = 0; square < boardSize; square++) {
+            ZOBRIST_CHAIN[square] = random.nextLong();
+        }
+        ZOBRIST_WHITE_TURN = random.nextLong();
+    }
+
     public Player turn;
     public Player p1;
     public Player p2;
-    public List<Disk> board;
+    /**
+     * Compatibility view over the bitboards below, for GuiBoard and the JSON/database codecs. Writes go straight
+     * through to the bitboards.
+     */
+    public final List<Disk> board = new BoardView();
     public String name;
     List<Integer> lastMove;
+    // Board state. Bit n is set when square n holds a disk of that kind, so boardSize can be at most 32.
+    private int red;
+    private int white;
+    private int kings;
+    // Kept up to date by put() so winner() never has to scan the board
+    private int redCount;
+    private int whiteCount;
+    private boolean redMobile;
+    private boolean whiteMobile;
+    private boolean mobilityStale = true;
+    // Zobrist key of the disks alone, kept up to date by put()
+    private long pieceKey;
+    // Evaluation hook: optional score per [red man, red king, white man, white king][square], and the sum of the
+    // scores of every disk on the board, kept up to date by put()
+    private int[][] squareScores;
+    private int squareScore;
+    // Undo stack for makeMove/unmakeMove. Created on first use and only ever grown, so a warmed-up search allocates
+    // nothing. lastMovePool holds one reusable lastMove list per stack depth.
+    private static final int UNDO_FIELDS = 6;
+    // Size of the compact board encoding: three int bitboards
+    private static final int BOARD_BYTES = 12;
+    private int[] undoState;
+    private long[] undoKeys;
+    private List<Player> undoTurns;
+    private List<List<Integer>> undoLastMoves;
+    private List<List<Integer>> lastMovePool;
+    private int undoDepth;
 
     /**
      * Creates a new public game with the initiating player. Colors will be randomized.
@@ -81,7 +200,17 @@ public class Game implements Message {
         this.name = other.name;
         this.p1 = new Player(other.p1);
         this.p2 = new Player(other.p2);
-        this.board = new ArrayList<>(other.board);
+        this.red = other.red;
+        this.white = other.white;
+        this.kings = other.kings;
+        this.redCount = other.redCount;
+        this.whiteCount = other.whiteCount;
+        this.redMobile = other.redMobile;
+        this.whiteMobile = other.whiteMobile;
+        this.mobilityStale = other.mobilityStale;
+        this.pieceKey = other.pieceKey;
+        this.squareScores = other.squareScores;
+        this.squareScore = other.squareScore;
         if (other.turn.getColor().equals(p1.getColor())) {
             this.turn = this.p1;
         } else {
@@ -90,6 +219,25 @@ public class Game implements Message {
         this.lastMove = new ArrayList<>(other.lastMove);
     }
 
+    /**
+     * Mutable copy of a snapshot. The players are immutable, so they are shared rather than copied.
+     *
+     * @param snapshot State to copy
+     */
+    Game(GameSnapshot snapshot) {
+        this.name = snapshot.getName();
+        this.p1 = snapshot.getP1();
+        this.p2 = snapshot.getP2();
+        this.turn = snapshot.getTurn();
+        this.red = snapshot.getBitboard(RED);
+        this.white = snapshot.getBitboard(WHITE);
+        this.kings = snapshot.getKings();
+        this.redCount = Integer.bitCount(red);
+        this.whiteCount = Integer.bitCount(white);
+        this.pieceKey = snapshot.pieceKey();
+        this.lastMove = new ArrayList<>(snapshot.getLastMove());
+    }
+
     /**
      * Creates a new board in the initial state.
      *
@@ -110,6 +258,47 @@ public class Game implements Message {
         return board;
     }
 
+    /**
+     * Walks diagonally from a square. Only used to build the lookup tables.
+     *
+     * @param square    Starting square coordinate
+     * @param direction Index into ROW_STEP/COLUMN_STEP
+     * @param distance  Number of diagonal steps
+     * @return Square coordinate reached, or -1 if it is off the board
+     */
+    private static int offset(int square, int direction, int distance) {
+        int row = square / columns;
+        // Playable squares sit on odd columns in even rows and on even columns in odd rows
+        int column = 2 * (square % columns) + (row % 2 == 0 ? 1 : 0);
+        row += ROW_STEP[direction] * distance;
+        column += COLUMN_STEP[direction] * distance;
+        if (row < 0 || row >= width || column < 0 || column >= width) {
+            return -1;
+        }
+        return row * columns + column / 2;
+    }
+
+    /**
+     * Finds which direction a table entry for src points at dst
+     *
+     * @param table ADJACENT or LANDING
+     * @param src   Source square coordinate
+     * @param dst   Destination square coordinate
+     * @return Direction index, or -1 if no direction of src reaches dst
+     */
+    private static int direction(int[][] table, int src, int dst) {
+        // Off-board table entries are -1, so an off-board dst must not reach the lookup
+        if (src < 0 || src >= boardSize || dst < 0 || dst >= boardSize) {
+            return -1;
+        }
+        for (int direction = 0; direction < DIRECTIONS; direction++) {
+            if (table[src][direction] == dst) {
+                return direction;
+            }
+        }
+        return -1;
+    }
+
     /**
      * Determines if the move is a legal single-square diagonal move. Only checks movement numbers and not disk
      * validity.
@@ -119,12 +308,7 @@ public class Game implements Message {
      * @return True if the move is valid.
      */
     public static Boolean legalAdj(Integer src, Integer dst) {
-        Integer move = dst - src;
-        return Math.abs(move) == columns
-                || Math.abs(move + 1) == columns
-                && src % (columns * 2) > columns
-                || Math.abs(move - 1) == columns
-                && src % (columns * 2) < columns - 1;
+        return direction(ADJACENT, src, dst) >= 0;
     }
 
     /**
@@ -135,20 +319,19 @@ public class Game implements Message {
      * @return True if the move is valid.
      */
     public static Boolean legalJmp(Integer src, Integer dst) {
-        Integer move = dst - src;
-        return (Math.abs(move + 1) == 2 * columns && src % columns > 0)
-                || (Math.abs(move - 1) == 2 * columns && src % columns < columns - 1);
+        return direction(LANDING, src, dst) >= 0;
     }
 
     /**
-     * Returns the position being jumped over. Assumes that the jump is valid, otherwise returns are undefined
+     * Returns the position being jumped over.
      *
      * @param src Source square coordinate
      * @param dst Destination square coordinate
-     * @return Jumped square coordinate.
+     * @return Jumped square coordinate, or -1 if the move is not a jump.
      */
     public static Integer jumpedSquare(Integer src, Integer dst) {
-        return src + Math.floorDiv(dst - src, 2) - Math.floorDiv(src % 8, 4) + 1;
+        int direction = direction(LANDING, src, dst);
+        return direction < 0 ? -1 : JUMPED[src][direction];
     }
 
     /**
@@ -168,8 +351,42 @@ public class Game implements Message {
         }
     }
 
+    /**
+     * Parses a board written by encodeBoard(), or by serializeBoard() so that games stored before the compact
+     * encoding still load. The two are told apart by the CSV's commas.
+     *
+     * @param stateBlob Encoded board
+     * @return Board, one disk per square
+     * @throws IllegalArgumentException when a compact board is malformed or puts two disks on one square.
+     */
     public static List<Disk> deserializeBoard(String stateBlob) {
-        return Arrays.stream(stateBlob.split(",")).map(Disk::fromString).collect(Collectors.toList());
+        if (stateBlob.indexOf(',') >= 0) {
+            return Arrays.stream(stateBlob.split(",")).map(Disk::fromString).collect(Collectors.toList());
+        }
+        byte[] bytes = Base64.getDecoder().decode(stateBlob);
+        if (bytes.length != BOARD_BYTES) {
+            throw new IllegalArgumentException("Compact board must be " + BOARD_BYTES + " bytes");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int red = buffer.getInt();
+        int white = buffer.getInt();
+        int kings = buffer.getInt();
+        int squares = (int) ((1L << boardSize) - 1);
+        if ((red & white) != 0 || (kings & ~(red | white)) != 0 || ((red | white) & ~squares) != 0) {
+            throw new IllegalArgumentException("Compact board has overlapping or off-board disks");
+        }
+        List<Disk> board = new ArrayList<>(boardSize);
+        for (int square = 0; square < boardSize; square++) {
+            int bit = 1 << square;
+            if ((red & bit) != 0) {
+                board.add((kings & bit) != 0 ? RED_KING : RED_DISK);
+            } else if ((white & bit) != 0) {
+                board.add((kings & bit) != 0 ? WHITE_KING : WHITE_DISK);
+            } else {
+                board.add(EMPTY);
+            }
+        }
+        return board;
     }
 
     public static Game fromJson(JsonElement json) {
@@ -241,12 +458,14 @@ public class Game implements Message {
         this.p2 = p2;
         if (board.size() != boardSize) {
             throw new IllegalArgumentException("Board must contain exactly 32 spaces");
-        } else if (board.stream().filter(Disk::red).count() > columns * startRows) {
+        }
+        for (int i = 0; i < boardSize; i++) {
+            put(i, board.get(i));
+        }
+        if (this.redCount > columns * startRows) {
             throw new IllegalArgumentException("Board must contain <= 12 red disks");
-        } else if (board.stream().filter(Disk::white).count() > columns * startRows) {
+        } else if (this.whiteCount > columns * startRows) {
             throw new IllegalArgumentException("Board must contain <= 12 white disks");
-        } else {
-            this.board = board;
         }
 
         if (!turn.getName().equals(p1.getName()) && !turn.getName().equals(p2.getName())) {
@@ -266,21 +485,203 @@ public class Game implements Message {
     }
 
     /**
-     * Basic filtering of moves for adjMoves and jmpMoves
+     * Checks that the disk on src is allowed to travel in the given direction. Kings go both ways.
+     *
+     * @param src       Source square coordinate
+     * @param direction Direction index
+     * @return True if the disk moves that way, False if it does not (or the square is empty)
+     */
+    private boolean heading(int src, int direction) {
+        int bit = 1 << src;
+        if ((kings & bit) != 0) {
+            return true;
+        } else if (ROW_STEP[direction] < 0) {
+            return (white & bit) != 0;
+        } else {
+            return (red & bit) != 0;
+        }
+    }
+
+    /**
+     * Checks a single-square move from src in one direction: disk direction and an empty destination.
+     *
+     * @param src       Source square coordinate
+     * @param direction Direction index
+     * @return True if the move can be made
+     */
+    private boolean canStep(int src, int direction) {
+        int dst = ADJACENT[src][direction];
+        return dst >= 0 && heading(src, direction) && ((red | white) & 1 << dst) == 0;
+    }
+
+    /**
+     * Checks a jump from src in one direction: disk direction, an empty landing square and an opponent to jump over.
+     *
+     * @param src       Source square coordinate
+     * @param direction Direction index
+     * @return True if the jump can be made
+     */
+    private boolean canJump(int src, int direction) {
+        return canJump(src, direction, mask(turn.oppositeColor()));
+    }
+
+    /**
+     * Checks a jump from src in one direction over any of the given opponent disks
      *
-     * @param move Distance being moved
-     * @param src  Source location
-     * @return False if the move is invalid, True otherwise (that is, there will be false positives).
+     * @param src       Source square coordinate
+     * @param direction Direction index
+     * @param opponents Bitboard of disks that may be jumped
+     * @return True if the jump can be made
      */
-    private Boolean moveFilter(Integer move, Integer src) {
-        Disk disk = this.getDisk(src);
-        return
-                // Move is in the right direction
-                ((move < 0 && disk.canMoveDown()) || (move >= 0 && disk.canMoveUp()))
-                        // Double check board bounds
-                        && (src + move) >= 0 && (src + move) < boardSize
-                        // Destination is empty
-                        && this.getDisk(src + move).empty();
+    private boolean canJump(int src, int direction, int opponents) {
+        int dst = LANDING[src][direction];
+        return dst >= 0 && heading(src, direction) && ((red | white) & 1 << dst) == 0
+                && (opponents & 1 << JUMPED[src][direction]) != 0;
+    }
+
+    /**
+     * Checks if the disk on src has any jump left, used to decide whether a jump chain continues
+     *
+     * @param src Source square coordinate
+     * @return True if at least one jump can be made
+     */
+    private boolean hasJump(int src) {
+        int opponents = mask(turn.oppositeColor());
+        for (int direction = 0; direction < DIRECTIONS; direction++) {
+            if (canJump(src, direction, opponents)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes every single step and single jump open to the side to move into a caller-owned buffer, encoded as
+     * described in Moves. Uses no streams, boxing or collections, so it allocates nothing and can be called in a
+     * loop.
+     *
+     * @param buffer Destination for the encoded moves. Must hold at least Moves.MAX_MOVES entries.
+     * @return Number of moves written to the start of buffer
+     */
+    public int singleMoves(int[] buffer) {
+        int opponents = mask(turn.oppositeColor());
+        int count = 0;
+        int chain = chainSquare();
+        if (chain >= 0) {
+            // Mid-chain only the jumping disk may move, and only by jumping again
+            for (int direction = 0; direction < DIRECTIONS; direction++) {
+                if (canJump(chain, direction, opponents)) {
+                    buffer[count++] = Moves.jump(chain, direction);
+                }
+            }
+            return count;
+        }
+        for (int pieces = mask(turn.getColor()); pieces != 0; pieces &= pieces - 1) {
+            int src = Integer.numberOfTrailingZeros(pieces);
+            for (int direction = 0; direction < DIRECTIONS; direction++) {
+                if (canStep(src, direction)) {
+                    buffer[count++] = Moves.step(src, direction);
+                } else if (canJump(src, direction, opponents)) {
+                    buffer[count++] = Moves.jump(src, direction);
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Writes every complete legal move for the side to move into a caller-owned buffer, encoded as described in
+     * Moves. Jumps are followed to the end of the chain, the same way move() keeps returning JMP_INCOMPLETE, so each
+     * entry ends the turn. If a jump chain is already in progress only its continuations are returned. Allocates
+     * nothing.
+     * <p>
+     * Captures come first, so a search trying moves in order looks at the likeliest cutoffs before the quiet moves.
+     *
+     * @param buffer Destination for the encoded moves. Must hold at least Moves.MAX_MOVES entries.
+     * @return Number of moves written to the start of buffer
+     */
+    public int legalMoves(int[] buffer) {
+        int chain = chainSquare();
+        if (chain >= 0) {
+            return jumpChains(chain, -1, buffer, 0);
+        }
+        int count = 0;
+        int own = mask(turn.getColor());
+        for (int pieces = own; pieces != 0; pieces &= pieces - 1) {
+            count = jumpChains(Integer.numberOfTrailingZeros(pieces), -1, buffer, count);
+        }
+        for (int pieces = own; pieces != 0; pieces &= pieces - 1) {
+            int src = Integer.numberOfTrailingZeros(pieces);
+            for (int direction = 0; direction < DIRECTIONS; direction++) {
+                if (canStep(src, direction)) {
+                    buffer[count++] = Moves.step(src, direction);
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Depth-first search over the jumps available to the disk on src. Each jump is played on the bitboards, explored
+     * and then taken back, so the board is unchanged on return.
+     *
+     * @param src    Square of the jumping disk
+     * @param move   Encoded jumps made so far, or -1 if none yet
+     * @param buffer Destination for finished chains
+     * @param count  Number of entries already in buffer
+     * @return Updated number of entries in buffer
+     */
+    private int jumpChains(int src, int move, int[] buffer, int count) {
+        int opponents = mask(turn.oppositeColor());
+        for (int direction = 0; direction < DIRECTIONS; direction++) {
+            if (!canJump(src, direction, opponents)) {
+                continue;
+            }
+            int next = move < 0 ? Moves.jump(src, direction) : Moves.extend(move, direction);
+            int dst = LANDING[src][direction];
+            int savedRed = red;
+            int savedWhite = white;
+            int savedKings = kings;
+            int savedRedCount = redCount;
+            int savedWhiteCount = whiteCount;
+            boolean savedStale = mobilityStale;
+            long savedKey = pieceKey;
+            int savedScore = squareScore;
+            put(dst, kingify(dst, diskAt(src)));
+            put(src, EMPTY);
+            put(JUMPED[src][direction], EMPTY);
+            if (hasJump(dst) && Moves.jumps(next) < Moves.MAX_JUMPS) {
+                count = jumpChains(dst, next, buffer, count);
+            } else {
+                buffer[count++] = next;
+            }
+            red = savedRed;
+            white = savedWhite;
+            kings = savedKings;
+            redCount = savedRedCount;
+            whiteCount = savedWhiteCount;
+            mobilityStale = savedStale;
+            pieceKey = savedKey;
+            squareScore = savedScore;
+        }
+        return count;
+    }
+
+    /**
+     * Finds the disk in the middle of a jump chain, using the same rule as move(): the turn has not passed if the last
+     * square moved to still holds a disk of the current turn's color.
+     *
+     * @return Square of the jumping disk, or -1 if no chain is in progress
+     */
+    public int chainSquare() {
+        if (lastMove.isEmpty()) {
+            return -1;
+        }
+        int last = lastMove.get(lastMove.size() - 1);
+        if (last >= 0 && last < boardSize && (mask(turn.getColor()) & 1 << last) != 0) {
+            return last;
+        }
+        return -1;
     }
 
     /**
@@ -291,28 +692,113 @@ public class Game implements Message {
      * @return Destination squares that would produce valid moves
      */
     private Set<Integer> adjMoves(Integer src) {
-        return Stream
-                // All valid adjacent moves
-                .of(-columns - 1, -columns, -columns + 1, columns - 1, columns, columns + 1)
-                // Basic filtering for moves
-                .filter(move -> moveFilter(move, src))
-                .map(move -> src + move)
-                // Prevent wrapping around the edge of the board
-                .filter(dst -> legalAdj(src, dst))
-                .collect(Collectors.toSet());
+        Set<Integer> moves = new HashSet<>();
+        for (int direction = 0; direction < DIRECTIONS; direction++) {
+            if (canStep(src, direction)) {
+                moves.add(ADJACENT[src][direction]);
+            }
+        }
+        return moves;
     }
 
     public Set<Integer> jmpMoves(Integer src) {
-        return Stream
-                // All valid adjacent moves
-                .of(-(2 * columns) - 1, -(2 * columns) + 1, (2 * columns) - 1, (2 * columns) + 1)
-                // Basic filtering for moves
-                .filter(move -> moveFilter(move, src))
-                .map(move -> src + move)
-                // Prevent wrapping around the edge of the board
-                .filter(dst -> legalJmp(src, dst))
-                .filter(dst -> this.getDisk(jumpedSquare(src, dst)).getColor().equals(turn.oppositeColor()))
-                .collect(Collectors.toSet());
+        Set<Integer> moves = new HashSet<>();
+        for (int direction = 0; direction < DIRECTIONS; direction++) {
+            if (canJump(src, direction)) {
+                moves.add(LANDING[src][direction]);
+            }
+        }
+        return moves;
+    }
+
+    /**
+     * Plays a complete move, as produced by legalMoves, and pushes the previous state onto the undo stack. The board,
+     * turn and lastMove end up as they would after replaying the move through move(). Does not validate the move.
+     * Constant time, and allocation-free once the stack has grown to the depth in use.
+     * <p>
+     * The list installed as lastMove is reused by later calls at the same depth, so copy it if it must outlive the
+     * matching unmakeMove.
+     *
+     * @param move Encoded legal move for the side to move
+     */
+    public void makeMove(int move) {
+        if (undoState == null) {
+            undoState = new int[UNDO_FIELDS * 16];
+            undoKeys = new long[16];
+            undoTurns = new ArrayList<>();
+            undoLastMoves = new ArrayList<>();
+            lastMovePool = new ArrayList<>();
+        } else if (undoKeys.length <= undoDepth) {
+            undoState = Arrays.copyOf(undoState, undoState.length * 2);
+            undoKeys = Arrays.copyOf(undoKeys, undoKeys.length * 2);
+        }
+        int base = UNDO_FIELDS * undoDepth;
+        undoState[base] = red;
+        undoState[base + 1] = white;
+        undoState[base + 2] = kings;
+        undoState[base + 3] = redCount | whiteCount << 16;
+        undoState[base + 4] = (redMobile ? 1 : 0) | (whiteMobile ? 2 : 0) | (mobilityStale ? 4 : 0);
+        undoState[base + 5] = squareScore;
+        undoKeys[undoDepth] = pieceKey;
+        undoTurns.add(turn);
+        undoLastMoves.add(lastMove);
+        if (lastMovePool.size() <= undoDepth) {
+            lastMovePool.add(new ArrayList<>());
+        }
+        List<Integer> path = lastMovePool.get(undoDepth);
+        path.clear();
+        undoDepth++;
+
+        int src = Moves.src(move);
+        if (chainSquare() == src) {
+            // Finishing a chain started through move(): the squares so far stay in lastMove
+            path.addAll(lastMove);
+        } else {
+            path.add(src);
+        }
+        if (!Moves.isJump(move)) {
+            int dst = ADJACENT[src][Moves.direction(move, 0)];
+            put(dst, kingify(dst, diskAt(src)));
+            put(src, EMPTY);
+            path.add(dst);
+        } else {
+            for (int hop = 0; hop < Moves.jumps(move); hop++) {
+                int direction = Moves.direction(move, hop);
+                int dst = LANDING[src][direction];
+                put(dst, kingify(dst, diskAt(src)));
+                put(src, EMPTY);
+                put(JUMPED[src][direction], EMPTY);
+                path.add(dst);
+                src = dst;
+            }
+        }
+        lastMove = path;
+        turn = nextTurn();
+    }
+
+    /**
+     * Takes back the most recent makeMove, restoring board, turn and lastMove exactly. Constant time.
+     *
+     * @throws IllegalStateException when there is no move to take back.
+     */
+    public void unmakeMove() {
+        if (undoDepth == 0) {
+            throw new IllegalStateException("No move to unmake");
+        }
+        undoDepth--;
+        int base = UNDO_FIELDS * undoDepth;
+        red = undoState[base];
+        white = undoState[base + 1];
+        kings = undoState[base + 2];
+        redCount = undoState[base + 3] & 0xFFFF;
+        whiteCount = undoState[base + 3] >>> 16;
+        redMobile = (undoState[base + 4] & 1) != 0;
+        whiteMobile = (undoState[base + 4] & 2) != 0;
+        mobilityStale = (undoState[base + 4] & 4) != 0;
+        squareScore = undoState[base + 5];
+        pieceKey = undoKeys[undoDepth];
+        turn = undoTurns.remove(undoDepth);
+        lastMove = undoLastMoves.remove(undoDepth);
     }
 
     private Player nextTurn() {
@@ -343,10 +829,10 @@ public class Game implements Message {
         if (src < 0 || dst < 0 || src >= this.board.size() || dst >= this.board.size()) {
             return OUT_OF_BOARD; // Not a square on the board
         }
-        if (this.getDisk(src).empty()) {
+        if (((red | white) & 1 << src) == 0) {
             return EMPTY_SRC;
         }
-        if (!this.getDisk(src).getColor().equals(turn.getColor())) {
+        if ((mask(turn.getColor()) & 1 << src) == 0) {
             return WRONG_TURN;
         }
         String user = Client.client.getUsername();
@@ -354,22 +840,26 @@ public class Game implements Message {
         if (user != null && !user.equals(turn.getName())) {
             return WRONG_TURN;
         }
-        if (adjMoves(src).contains(dst)) {
-            this.board.set(dst, kingify(dst, this.getDisk(src)));
-            this.board.set(src, EMPTY);
+        int step = direction(ADJACENT, src, dst);
+        int jump = direction(LANDING, src, dst);
+        if (step >= 0 && canStep(src, step)) {
+            put(dst, kingify(dst, diskAt(src)));
+            put(src, EMPTY);
             this.lastMove.add(src);
             this.lastMove.add(dst);
             this.turn = this.nextTurn();
+            refreshMobility();
             return ADJ;
-        } else if (jmpMoves(src).contains(dst)) {
-            this.board.set(dst, kingify(dst, this.getDisk(src)));
-            this.board.set(src, EMPTY);
-            this.board.set(jumpedSquare(src, dst), EMPTY); // Removing jumped square
+        } else if (jump >= 0 && canJump(src, jump)) {
+            put(dst, kingify(dst, diskAt(src)));
+            put(src, EMPTY);
+            put(JUMPED[src][jump], EMPTY); // Removing jumped square
             if (this.lastMove.isEmpty()) {
                 this.lastMove.add(src);
             }
             this.lastMove.add(dst);
-            if (jmpMoves(dst).isEmpty()) {
+            refreshMobility();
+            if (!hasJump(dst)) {
                 this.turn = this.nextTurn();
                 return JMP;
             } else {
@@ -399,7 +889,7 @@ public class Game implements Message {
             }
             src = dst;
         }
-        if (newState.board.equals(board)) {
+        if (newState.red == red && newState.white == white && newState.kings == kings) {
             return status;
         } else {
             return INVALID_STATE;
@@ -410,6 +900,109 @@ public class Game implements Message {
         return board.get(coord);
     }
 
+    /**
+     * Reads a square straight from the bitboards. No bounds checking.
+     *
+     * @param square Square coordinate
+     * @return Disk on the square, or EMPTY
+     */
+    private Disk diskAt(int square) {
+        int bit = 1 << square;
+        if ((red & bit) != 0) {
+            return (kings & bit) != 0 ? RED_KING : RED_DISK;
+        } else if ((white & bit) != 0) {
+            return (kings & bit) != 0 ? WHITE_KING : WHITE_DISK;
+        } else {
+            return EMPTY;
+        }
+    }
+
+    /**
+     * Writes a disk to a square of the bitboards. No bounds checking.
+     *
+     * @param square Square coordinate
+     * @param disk   Disk to place, EMPTY clears the square
+     */
+    private void put(int square, Disk disk) {
+        int bit = 1 << square;
+        int kingIndex = (kings & bit) != 0 ? 1 : 0;
+        if ((red & bit) != 0) {
+            redCount--;
+            pieceKey ^= ZOBRIST[kingIndex][square];
+            if (squareScores != null) {
+                squareScore -= squareScores[kingIndex][square];
+            }
+        } else if ((white & bit) != 0) {
+            whiteCount--;
+            pieceKey ^= ZOBRIST[2 + kingIndex][square];
+            if (squareScores != null) {
+                squareScore -= squareScores[2 + kingIndex][square];
+            }
+        }
+        red &= ~bit;
+        white &= ~bit;
+        kings &= ~bit;
+        kingIndex = disk.king() ? 1 : 0;
+        if (disk.red()) {
+            red |= bit;
+            redCount++;
+            pieceKey ^= ZOBRIST[kingIndex][square];
+            if (squareScores != null) {
+                squareScore += squareScores[kingIndex][square];
+            }
+        } else if (disk.white()) {
+            white |= bit;
+            whiteCount++;
+            pieceKey ^= ZOBRIST[2 + kingIndex][square];
+            if (squareScores != null) {
+                squareScore += squareScores[2 + kingIndex][square];
+            }
+        }
+        mobilityStale = true;
+        if (disk.king() && !disk.empty()) {
+            kings |= bit;
+        }
+    }
+
+    /**
+     * Bitboard of all squares holding the given color
+     *
+     * @param color Disk color, NONE gives the empty squares
+     * @return Bitboard with one bit per matching square
+     */
+    private int mask(Color color) {
+        if (color == RED) {
+            return red;
+        } else if (color == WHITE) {
+            return white;
+        } else {
+            return ~(red | white) & (int) ((1L << boardSize) - 1);
+        }
+    }
+
+    /**
+     * Squares visited so far in the current or just finished turn: the source square followed by every square landed
+     * on
+     *
+     * @return Read-only view of the path
+     */
+    public List<Integer> getLastMove() {
+        return Collections.unmodifiableList(lastMove);
+    }
+
+    /**
+     * Takes an immutable snapshot of the current state, which can be shared without copying
+     *
+     * @return Snapshot
+     */
+    public GameSnapshot snapshot() {
+        return GameSnapshot.of(this);
+    }
+
+    long pieceKey() {
+        return pieceKey;
+    }
+
     public Player red() {
         if (this.p1.getColor().equals(RED)) {
             return p1;
@@ -418,18 +1011,188 @@ public class Game implements Message {
         }
     }
 
-    private Boolean moves(Player player) {
-        if (!board.stream().anyMatch(d -> d.getColor().equals(player.getColor()))) {
-            return false;
+    /**
+     * Bitboard of all disks of one color. Bit n is set when square n holds one.
+     *
+     * @param color Disk color, NONE gives the empty squares
+     * @return Bitboard
+     */
+    public int getBitboard(Color color) {
+        return mask(color);
+    }
+
+    /**
+     * Bitboard of all kings of either color
+     *
+     * @return Bitboard
+     */
+    public int getKings() {
+        return kings;
+    }
+
+    /**
+     * 64-bit Zobrist key of the position: every disk and king on its square, the side to move, and the jumping disk
+     * if a chain is in progress. The disk part is updated incrementally as the board changes, so this is O(1). Equal
+     * positions always share a key, and different positions collide with probability about 2^-64.
+     *
+     * @return Position key
+     */
+    public long positionKey() {
+        long key = pieceKey;
+        if (turn.getColor() == WHITE) {
+            key ^= ZOBRIST_WHITE_TURN;
         }
-        for (int i = 0; i < 32; i++) {
-            if (!adjMoves(i).isEmpty() || !jmpMoves(i).isEmpty()) {
-                return true;
+        int chain = chainSquare();
+        if (chain >= 0) {
+            key ^= ZOBRIST_CHAIN[chain];
+        }
+        return key;
+    }
+
+    /**
+     * Installs a table of scores per disk and square, whose sum over the board is then kept up to date as disks move,
+     * by move(), makeMove() and unmakeMove() alike. Copies of the game share the table. Worked out from scratch once
+     * here, O(1) per change afterwards.
+     *
+     * @param scores Scores indexed [red man, red king, white man, white king][square], or null to stop tracking. Must
+     *               not be changed while installed.
+     */
+    public void setSquareScores(int[][] scores) {
+        squareScores = scores;
+        squareScore = 0;
+        for (int square = 0; scores != null && square < boardSize; square++) {
+            int bit = 1 << square;
+            int kingIndex = (kings & bit) != 0 ? 1 : 0;
+            if ((red & bit) != 0) {
+                squareScore += scores[kingIndex][square];
+            } else if ((white & bit) != 0) {
+                squareScore += scores[2 + kingIndex][square];
+            }
+        }
+    }
+
+    /**
+     * @param scores Score table
+     * @return True if that exact table is the one installed by setSquareScores()
+     */
+    public boolean usesSquareScores(int[][] scores) {
+        return squareScores != null && squareScores == scores;
+    }
+
+    /**
+     * @return Sum of the installed square scores over every disk on the board, 0 if none are installed
+     */
+    public int getSquareScore() {
+        return squareScore;
+    }
+
+    /**
+     * Counts the single steps and jumps open to one color, one per disk and direction, with the grouped shift tables.
+     * Jump chains are not followed, so this is a cheap mobility measure rather than the number of legal moves.
+     *
+     * @param color RED or WHITE
+     * @return Number of (disk, direction) pairs that can step or jump
+     */
+    public int moveCount(Color color) {
+        int own = mask(color);
+        int opponents = color == RED ? white : red;
+        int empty = mask(Color.NONE);
+        int forward = color == RED ? 1 : -1;
+        int count = 0;
+        for (int direction = 0; direction < DIRECTIONS; direction++) {
+            int movers = ROW_STEP[direction] == forward ? own : own & kings;
+            for (int group = 0; group < STEP_SOURCES[direction].length; group++) {
+                count += Integer.bitCount(movers & STEP_SOURCES[direction][group]
+                        & shift(empty, -STEP_SHIFT[direction][group]));
+            }
+            for (int group = 0; group < JUMP_SOURCES[direction].length; group++) {
+                count += Integer.bitCount(movers & JUMP_SOURCES[direction][group]
+                        & shift(opponents, -JUMP_OVER_SHIFT[direction][group])
+                        & shift(empty, -JUMP_LAND_SHIFT[direction][group]));
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Number of disks of one color on the board. Kept up to date on every change, so this is O(1).
+     *
+     * @param color RED or WHITE
+     * @return Disk count
+     */
+    public int count(Color color) {
+        if (color == RED) {
+            return redCount;
+        } else if (color == WHITE) {
+            return whiteCount;
+        } else {
+            return boardSize - redCount - whiteCount;
+        }
+    }
+
+    /**
+     * Shifts a whole bitboard by a square distance
+     *
+     * @param bits  Bitboard
+     * @param shift Positive towards the last square, negative towards square 0
+     * @return Shifted bitboard
+     */
+    private static int shift(int bits, int shift) {
+        return shift >= 0 ? bits << shift : bits >>> -shift;
+    }
+
+    /**
+     * Checks if any disk of a color has a step or a jump, testing all disks at once with the grouped shift tables
+     *
+     * @param color RED or WHITE
+     * @return True if at least one move exists
+     */
+    private boolean mobile(Color color) {
+        int own = mask(color);
+        int opponents = color == RED ? white : red;
+        int empty = mask(Color.NONE);
+        // Red men move towards the last square, white men towards square 0
+        int forward = color == RED ? 1 : -1;
+        for (int direction = 0; direction < DIRECTIONS && own != 0; direction++) {
+            int movers = ROW_STEP[direction] == forward ? own : own & kings;
+            for (int group = 0; group < STEP_SOURCES[direction].length; group++) {
+                if ((movers & STEP_SOURCES[direction][group] & shift(empty, -STEP_SHIFT[direction][group])) != 0) {
+                    return true;
+                }
+            }
+            for (int group = 0; group < JUMP_SOURCES[direction].length; group++) {
+                if ((movers & JUMP_SOURCES[direction][group]
+                        & shift(opponents, -JUMP_OVER_SHIFT[direction][group])
+                        & shift(empty, -JUMP_LAND_SHIFT[direction][group])) != 0) {
+                    return true;
+                }
             }
         }
         return false;
     }
 
+    /**
+     * Recomputes whether each side can move. Costs a fixed number of bit operations, independent of disk count.
+     */
+    private void refreshMobility() {
+        redMobile = redCount > 0 && mobile(RED);
+        whiteMobile = whiteCount > 0 && mobile(WHITE);
+        mobilityStale = false;
+    }
+
+    private Boolean moves(Player player) {
+        if (mobilityStale) {
+            refreshMobility();
+        }
+        return player.getColor() == RED ? redMobile : whiteMobile;
+    }
+
+    /**
+     * Finds the winner, if any. A player loses when they have no disks left or none of their disks can move. Reads
+     * cached counts and mobility, so repeated calls are O(1).
+     *
+     * @return Winning player, or null if the game is still going
+     */
     public Player winner() {
         if (!moves(p1)) {
             return p2;
@@ -441,22 +1204,69 @@ public class Game implements Message {
     }
 
 
+    /**
+     * Legacy CSV board encoding, two characters per square such as "r_,w_,__,rk". Still read by deserializeBoard(),
+     * but storage and the wire use encodeBoard().
+     *
+     * @return Board as CSV
+     */
     public String serializeBoard() {
         return this.board.stream().map(Disk::toString).collect(Collectors.joining(","));
     }
 
+    /**
+     * Compact board encoding: the red, white and king bitboards as 12 big-endian bytes in base64, 16 characters in
+     * place of the CSV's 95. Read back by deserializeBoard().
+     *
+     * @return Encoded board
+     */
+    public String encodeBoard() {
+        return Base64.getEncoder().encodeToString(ByteBuffer.allocate(BOARD_BYTES).putInt(red).putInt(white)
+                .putInt(kings).array());
+    }
+
     public JsonElement toJson() {
         JsonObject root = new JsonObject();
         root.addProperty("turn", this.turn.getName());
         root.addProperty("p1", this.p1.getName());
         root.addProperty("p2", this.p2.getName());
-        root.addProperty("board", serializeBoard());
+        root.addProperty("board", encodeBoard());
         root.addProperty("name", this.name);
         root.addProperty("moves", this.lastMove.stream().map(Object::toString).collect(Collectors.joining(",")));
         root.addProperty("red", this.red().getName());
         return root;
     }
 
+    /**
+     * Live List view of the bitboards, indexed by square coordinate
+     */
+    private class BoardView extends AbstractList<Disk> {
+        @Override
+        public Disk get(int index) {
+            checkSquare(index);
+            return diskAt(index);
+        }
+
+        @Override
+        public Disk set(int index, Disk disk) {
+            checkSquare(index);
+            Disk previous = diskAt(index);
+            put(index, disk);
+            return previous;
+        }
+
+        @Override
+        public int size() {
+            return boardSize;
+        }
+
+        private void checkSquare(int index) {
+            if (index < 0 || index >= boardSize) {
+                throw new IndexOutOfBoundsException("Square " + index + " is not on the board");
+            }
+        }
+    }
+
     @Override
     public MessageTypes type() {
         return MessageTypes.GAME;
@@ -484,7 +1294,7 @@ public class Game implements Message {
         int result = turn.hashCode();
         result = 31 * result + p1.hashCode();
         result = 31 * result + p2.hashCode();
-        result = 31 * result + board.hashCode();
+        result = 31 * result + Long.hashCode(pieceKey);
         result = 31 * result + name.hashCode();
         result = 31 * result + lastMove.hashCode();
         return result;
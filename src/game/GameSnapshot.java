@@ -0,0 +1,315 @@
+package game;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static game.Color.RED;
+import static game.Color.WHITE;
+import static game.Disk.*;
+
+/**
+ * Immutable snapshot of a game. Every field is final and nothing it hands out can be modified, so one snapshot can be
+ * shared between threads, caches and the UI without copying or locking.
+ * <p>
+ * Playing a move returns a new snapshot and leaves this one as it was. The two share the name and players, and a jump
+ * chain extended by one hop shares the squares visited so far; the board itself is three ints. Rules come from Game:
+ * a move is played on a scratch Game built from the snapshot, so the two can never disagree.
+ */
+public final class GameSnapshot {
+    private final String name;
+    private final Player p1;
+    private final Player p2;
+    private final Player turn;
+    private final int red;
+    private final int white;
+    private final int kings;
+    private final long pieceKey;
+    private final long positionKey;
+    private final Player winner;
+    private final Path path;
+    private final MoveStatus status;
+    private final List<Disk> board = new BoardView();
+
+    /**
+     * Squares visited in the current turn as a linked list from the last square back, so a longer chain shares every
+     * node of the shorter one it grew from
+     */
+    private static final class Path {
+        final Path previous;
+        final int square;
+        final int size;
+
+        Path(Path previous, int square) {
+            this.previous = previous;
+            this.square = square;
+            this.size = previous == null ? 1 : previous.size + 1;
+        }
+    }
+
+    /**
+     * Snapshot of a game's current state, sharing the parts of base's path that the game's lastMove still starts with
+     */
+    private GameSnapshot(Game game, MoveStatus status, Path base) {
+        this.name = game.name;
+        this.p1 = game.p1;
+        this.p2 = game.p2;
+        this.turn = game.turn;
+        this.red = game.getBitboard(RED);
+        this.white = game.getBitboard(WHITE);
+        this.kings = game.getKings();
+        this.pieceKey = game.pieceKey();
+        this.positionKey = game.positionKey();
+        this.winner = game.winner();
+        this.path = extend(base, game.lastMove);
+        this.status = status;
+    }
+
+    /**
+     * Same state as other with a different move status, sharing everything
+     */
+    private GameSnapshot(GameSnapshot other, MoveStatus status) {
+        this.name = other.name;
+        this.p1 = other.p1;
+        this.p2 = other.p2;
+        this.turn = other.turn;
+        this.red = other.red;
+        this.white = other.white;
+        this.kings = other.kings;
+        this.pieceKey = other.pieceKey;
+        this.positionKey = other.positionKey;
+        this.winner = other.winner;
+        this.path = other.path;
+        this.status = status;
+    }
+
+    /**
+     * Builds the path for a list of squares, reusing base if it is a prefix of them
+     */
+    private static Path extend(Path base, List<Integer> squares) {
+        int shared = base != null && base.size <= squares.size() ? base.size : 0;
+        for (Path node = base; shared > 0 && node != null; node = node.previous) {
+            if (node.square != squares.get(node.size - 1)) {
+                shared = 0;
+            }
+        }
+        Path path = shared > 0 ? base : null;
+        for (int i = shared; i < squares.size(); i++) {
+            path = new Path(path, squares.get(i));
+        }
+        return path;
+    }
+
+    /**
+     * Takes a snapshot of a game. The game can go on changing afterwards without affecting the snapshot.
+     *
+     * @param game Game to capture
+     * @return Snapshot, with no move status
+     */
+    public static GameSnapshot of(Game game) {
+        return new GameSnapshot(game, null, null);
+    }
+
+    /**
+     * @return Mutable copy of this snapshot, for code that still works on Game
+     */
+    public Game toGame() {
+        return new Game(this);
+    }
+
+    /**
+     * Moves the piece from one space on the board to another, with the same rules and results as Game.move().
+     *
+     * @param src Location of the disk being moved
+     * @param dst Location where the disk is being moved to
+     * @return Snapshot after the move, whose getStatus() says how it went. When the move fails it holds the same
+     * state as this one.
+     */
+    public GameSnapshot move(int src, int dst) {
+        Game game = toGame();
+        MoveStatus status = game.move(src, dst);
+        if (status.failure()) {
+            return new GameSnapshot(this, status);
+        }
+        return new GameSnapshot(game, status, path);
+    }
+
+    /**
+     * Plays a complete move, as produced by legalMoves. Does not validate the move.
+     *
+     * @param move Encoded legal move for the side to move
+     * @return Snapshot after the move, with no move status
+     */
+    public GameSnapshot play(int move) {
+        Game game = toGame();
+        game.makeMove(move);
+        return new GameSnapshot(game, null, path);
+    }
+
+    /**
+     * Writes every legal complete move for the side to move into a caller-owned buffer, as Game.legalMoves() does
+     *
+     * @param buffer Destination. Must hold at least Moves.MAX_MOVES entries.
+     * @return Number of moves written
+     */
+    public int legalMoves(int[] buffer) {
+        return toGame().legalMoves(buffer);
+    }
+
+    /**
+     * @return Result of the move that produced this snapshot, or null if it was not made by move()
+     */
+    public MoveStatus getStatus() {
+        return status;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Player getP1() {
+        return p1;
+    }
+
+    public Player getP2() {
+        return p2;
+    }
+
+    public Player getTurn() {
+        return turn;
+    }
+
+    /**
+     * @return Read-only view of the board, indexed by square coordinate
+     */
+    public List<Disk> getBoard() {
+        return board;
+    }
+
+    public Disk getDisk(int square) {
+        return board.get(square);
+    }
+
+    /**
+     * Squares visited so far in the current or just finished turn, as in Game.getLastMove()
+     *
+     * @return Read-only list of squares
+     */
+    public List<Integer> getLastMove() {
+        if (path == null) {
+            return Collections.emptyList();
+        }
+        Integer[] squares = new Integer[path.size];
+        for (Path node = path; node != null; node = node.previous) {
+            squares[node.size - 1] = node.square;
+        }
+        return Collections.unmodifiableList(Arrays.asList(squares));
+    }
+
+    /**
+     * Bitboard of all disks of one color, as in Game.getBitboard()
+     *
+     * @param color Disk color, NONE gives the empty squares
+     * @return Bitboard
+     */
+    public int getBitboard(Color color) {
+        if (color == RED) {
+            return red;
+        } else if (color == WHITE) {
+            return white;
+        } else {
+            return ~(red | white) & (int) ((1L << Game.boardSize) - 1);
+        }
+    }
+
+    public int getKings() {
+        return kings;
+    }
+
+    /**
+     * @param color RED or WHITE
+     * @return Number of disks of that color
+     */
+    public int count(Color color) {
+        return Integer.bitCount(getBitboard(color));
+    }
+
+    /**
+     * @return Zobrist key of the position, equal to Game.positionKey() for the same state
+     */
+    public long positionKey() {
+        return positionKey;
+    }
+
+    long pieceKey() {
+        return pieceKey;
+    }
+
+    /**
+     * @return Winning player, or null if the game is still going. Worked out once, when the snapshot was taken.
+     */
+    public Player winner() {
+        return winner;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        GameSnapshot snapshot = (GameSnapshot) o;
+
+        return red == snapshot.red && white == snapshot.white && kings == snapshot.kings
+                && name.equals(snapshot.name) && p1.equals(snapshot.p1) && p2.equals(snapshot.p2)
+                && turn.equals(snapshot.turn) && getLastMove().equals(snapshot.getLastMove());
+    }
+
+    @Override
+    public int hashCode() {
+        int result = turn.hashCode();
+        result = 31 * result + p1.hashCode();
+        result = 31 * result + p2.hashCode();
+        result = 31 * result + Long.hashCode(pieceKey);
+        result = 31 * result + name.hashCode();
+        result = 31 * result + getLastMove().hashCode();
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "GameSnapshot{" +
+                "turn=" + turn +
+                ", p1=" + p1 +
+                ", p2=" + p2 +
+                ", board=" + board +
+                ", name='" + name + '\'' +
+                ", lastMove=" + getLastMove() +
+                '}';
+    }
+
+    /**
+     * Read-only List view of the bitboards, indexed by square coordinate
+     */
+    private class BoardView extends AbstractList<Disk> {
+        @Override
+        public Disk get(int index) {
+            if (index < 0 || index >= Game.boardSize) {
+                throw new IndexOutOfBoundsException("Square " + index + " is not on the board");
+            }
+            int bit = 1 << index;
+            if ((red & bit) != 0) {
+                return (kings & bit) != 0 ? RED_KING : RED_DISK;
+            } else if ((white & bit) != 0) {
+                return (kings & bit) != 0 ? WHITE_KING : WHITE_DISK;
+            } else {
+                return EMPTY;
+            }
+        }
+
+        @Override
+        public int size() {
+            return Game.boardSize;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package game;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Helpers for moves packed into a single int, as written by Game.singleMoves and Game.legalMoves. Bit layout, from the
+ * lowest bit:
+ * <ul>
+ * <li>5 bits: source square</li>
+ * <li>4 bits: number of jumps, 0 for a single-square step</li>
+ * <li>2 bits per hop: direction index into the Game lookup tables (one hop for a step)</li>
+ * </ul>
+ * That leaves room for MAX_JUMPS hops. Game.legalMoves stops following a chain at that length.
+ */
+public final class Moves {
+    /**
+     * Buffer size that always fits every move generated for one position
+     */
+    public static final int MAX_MOVES = 256;
+    /**
+     * Longest jump chain that fits in one encoded move
+     */
+    public static final int MAX_JUMPS = 11;
+    private static final int SQUARE_BITS = 5;
+    private static final int JUMPS_SHIFT = SQUARE_BITS;
+    private static final int JUMPS_BITS = 4;
+    private static final int DIRECTIONS_SHIFT = JUMPS_SHIFT + JUMPS_BITS;
+
+    private Moves() {
+    }
+
+    /**
+     * Encodes a single-square step
+     *
+     * @param src       Source square coordinate
+     * @param direction Direction index
+     * @return Encoded move
+     */
+    public static int step(int src, int direction) {
+        return src | direction << DIRECTIONS_SHIFT;
+    }
+
+    /**
+     * Encodes a single jump
+     *
+     * @param src       Source square coordinate
+     * @param direction Direction index
+     * @return Encoded move
+     */
+    public static int jump(int src, int direction) {
+        return src | 1 << JUMPS_SHIFT | direction << DIRECTIONS_SHIFT;
+    }
+
+    /**
+     * Adds one more jump to the end of an encoded jump chain
+     *
+     * @param move      Encoded jump, with fewer than MAX_JUMPS hops
+     * @param direction Direction index of the new hop
+     * @return Encoded move
+     */
+    public static int extend(int move, int direction) {
+        int jumps = jumps(move);
+        return (move & ~((1 << JUMPS_BITS) - 1 << JUMPS_SHIFT))
+                | (jumps + 1) << JUMPS_SHIFT
+                | direction << DIRECTIONS_SHIFT + 2 * jumps;
+    }
+
+    /**
+     * @param move Encoded move
+     * @return Square the moving disk starts on
+     */
+    public static int src(int move) {
+        return move & (1 << SQUARE_BITS) - 1;
+    }
+
+    /**
+     * @param move Encoded move
+     * @return Number of disks jumped, 0 for a step
+     */
+    public static int jumps(int move) {
+        return move >>> JUMPS_SHIFT & (1 << JUMPS_BITS) - 1;
+    }
+
+    /**
+     * @param move Encoded move
+     * @return True if the move captures at least one disk
+     */
+    public static boolean isJump(int move) {
+        return jumps(move) > 0;
+    }
+
+    /**
+     * @param move Encoded move
+     * @param hop  Hop index, starting at 0
+     * @return Direction index of that hop
+     */
+    public static int direction(int move, int hop) {
+        return move >>> DIRECTIONS_SHIFT + 2 * hop & 3;
+    }
+
+    /**
+     * @param move Encoded move
+     * @return Square the moving disk ends on
+     */
+    public static int dst(int move) {
+        int square = src(move);
+        if (!isJump(move)) {
+            return Game.ADJACENT[square][direction(move, 0)];
+        }
+        for (int hop = 0; hop < jumps(move); hop++) {
+            square = Game.LANDING[square][direction(move, hop)];
+        }
+        return square;
+    }
+
+    /**
+     * Lists the squares a move visits, in the same form as Game.lastMove for a whole turn
+     *
+     * @param move Encoded move
+     * @return Source square followed by every square landed on
+     */
+    public static List<Integer> path(int move) {
+        List<Integer> squares = new ArrayList<>();
+        int square = src(move);
+        squares.add(square);
+        if (!isJump(move)) {
+            squares.add(Game.ADJACENT[square][direction(move, 0)]);
+            return squares;
+        }
+        for (int hop = 0; hop < jumps(move); hop++) {
+            square = Game.LANDING[square][direction(move, hop)];
+            squares.add(square);
+        }
+        return squares;
+    }
+
+    /**
+     * Encodes a list of squares, such as Game.lastMove. Only checks the board geometry, not the disks on it.
+     *
+     * @param path Source square followed by every square landed on
+     * @return Encoded move, or -1 if the squares do not form a step or a chain of jumps
+     */
+    public static int fromPath(List<Integer> path) {
+        if (path.size() < 2) {
+            return -1;
+        }
+        // Off-board table entries are -1, so an off-board square must not reach find()
+        for (int square : path) {
+            if (square < 0 || square >= Game.boardSize) {
+                return -1;
+            }
+        }
+        int src = path.get(0);
+        if (path.size() == 2) {
+            int direction = find(Game.ADJACENT[src], path.get(1));
+            if (direction >= 0) {
+                return step(src, direction);
+            }
+        }
+        if (path.size() - 1 > MAX_JUMPS) {
+            return -1;
+        }
+        int move = -1;
+        int square = src;
+        for (int i = 1; i < path.size(); i++) {
+            int direction = find(Game.LANDING[square], path.get(i));
+            if (direction < 0) {
+                return -1;
+            }
+            move = move < 0 ? jump(square, direction) : extend(move, direction);
+            square = path.get(i);
+        }
+        return move;
+    }
+
+    private static int find(int[] squares, int square) {
+        for (int direction = 0; direction < squares.length; direction++) {
+            if (squares[direction] == square) {
+                return direction;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,152 @@
+package game;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import static game.Color.RED;
+import static game.Color.WHITE;
+import static game.Disk.*;
+
+/**
+ * Performance test of move generation: counts the positions reached after exactly depth complete turns, walking the
+ * whole tree with legalMoves and makeMove/unmakeMove. Counts only depend on the rules, so they are a regression oracle
+ * for move generation, and leaves per second is the raw speed of the rules engine.
+ * <p>
+ * A side with no legal move ends its branch, contributing no leaves below it.
+ */
+public final class Perft {
+    // Below this many plies a fork-join task counts its subtree itself instead of splitting further
+    private static final int SPLIT_DEPTH = 3;
+    private static final Player RED_PLAYER = new Player("red", RED);
+    private static final Player WHITE_PLAYER = new Player("white", WHITE);
+    /**
+     * Fixed positions covering the start, a quiet middle game, kings on both sides and a branching jump chain. One
+     * character per square from square 0: r/w for men, R/W for kings, '.' for empty, then the side to move.
+     */
+    public static final String[] REFERENCE = {
+            "rrrrrrrrrrrr........wwwwwwwwwwww r",
+            "rrrrr.rr.rr.r.r...w..ww.www.wwww w",
+            ".R...r.rr.r...w.wW..w.w..W...... r",
+            ".r.r.ww......www.....ww.....W... r",
+    };
+
+    private Perft() {
+    }
+
+    /**
+     * Builds a game from one of the REFERENCE strings
+     *
+     * @param position Board string
+     * @return Game in that position, with no jump chain in progress
+     * @throws IllegalArgumentException when the string is malformed.
+     */
+    public static Game position(String position) {
+        if (position.length() != Game.boardSize + 2 || position.charAt(Game.boardSize) != ' ') {
+            throw new IllegalArgumentException("Malformed position: " + position);
+        }
+        List<Disk> board = new ArrayList<>(Game.boardSize);
+        for (int square = 0; square < Game.boardSize; square++) {
+            switch (position.charAt(square)) {
+                case 'r':
+                    board.add(RED_DISK);
+                    break;
+                case 'R':
+                    board.add(RED_KING);
+                    break;
+                case 'w':
+                    board.add(WHITE_DISK);
+                    break;
+                case 'W':
+                    board.add(WHITE_KING);
+                    break;
+                case '.':
+                    board.add(EMPTY);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Malformed position: " + position);
+            }
+        }
+        Player turn = position.charAt(Game.boardSize + 1) == 'w' ? WHITE_PLAYER : RED_PLAYER;
+        return new Game("perft", RED_PLAYER, WHITE_PLAYER, board, turn, new ArrayList<>());
+    }
+
+    /**
+     * Counts leaves on the calling thread
+     *
+     * @param position Root position, not modified
+     * @param depth    Turns to play, at least 0
+     * @return Number of positions reached after exactly depth turns
+     */
+    public static long perft(Game position, int depth) {
+        return count(new Game(position), depth, new int[Math.max(depth, 1)][Moves.MAX_MOVES]);
+    }
+
+    private static long count(Game game, int depth, int[][] buffers) {
+        if (depth == 0) {
+            return 1;
+        }
+        int[] moves = buffers[depth - 1];
+        int count = game.legalMoves(moves);
+        if (depth == 1) {
+            // Bulk counting: the leaves are exactly the moves, no need to play them
+            return count;
+        }
+        long leaves = 0;
+        for (int i = 0; i < count; i++) {
+            game.makeMove(moves[i]);
+            leaves += count(game, depth - 1, buffers);
+            game.unmakeMove();
+        }
+        return leaves;
+    }
+
+    /**
+     * Counts leaves with fork-join: subtrees are split into tasks until SPLIT_DEPTH plies remain, and each task works
+     * on its own copy of the game
+     *
+     * @param position Root position, not modified
+     * @param depth    Turns to play, at least 0
+     * @param pool     Pool to run the tasks in
+     * @return Number of positions reached after exactly depth turns, the same as perft()
+     */
+    public static long parallel(Game position, int depth, ForkJoinPool pool) {
+        return pool.invoke(new Subtree(new Game(position), depth));
+    }
+
+    /**
+     * One subtree of a parallel perft, owning its game
+     */
+    private static class Subtree extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+        private final Game game;
+        private final int depth;
+
+        Subtree(Game game, int depth) {
+            this.game = game;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Long compute() {
+            if (depth <= SPLIT_DEPTH) {
+                return count(game, depth, new int[Math.max(depth, 1)][Moves.MAX_MOVES]);
+            }
+            int[] moves = new int[Moves.MAX_MOVES];
+            int count = game.legalMoves(moves);
+            List<Subtree> children = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Game child = new Game(game);
+                child.makeMove(moves[i]);
+                children.add(new Subtree(child, depth - 1));
+            }
+            invokeAll(children);
+            long leaves = 0;
+            for (Subtree child : children) {
+                leaves += child.join();
+            }
+            return leaves;
+        }
+    }
+}
@@ -0,0 +1,561 @@
+package game.ai;
+
+import game.Game;
+import game.Moves;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static game.Color.RED;
+import static game.Color.WHITE;
+
+/**
+ * Computer opponent. Runs a negamax alpha-beta search with iterative deepening and a capture-only quiescence search
+ * over a private copy of the game, using makeMove/unmakeMove so no Game is allocated per node. Stops when the time
+ * budget runs out and returns the best move of the deepest finished iteration.
+ * <p>
+ * With more than one thread the engine runs lazy SMP: helper threads search the same root at staggered depths and
+ * move orders, and share their work with the main thread only through the lock-free transposition table. The main
+ * thread's result is the one returned.
+ * <p>
+ * An Engine keeps per-search scratch state, so only one search may run on it at a time.
+ */
+public class Engine {
+    /**
+     * Score for winning at the root. Wins further away score lower, so the engine takes the quickest one.
+     */
+    public static final int WIN = 1000000;
+    static final int MAX_PLY = 128;
+    // Scores this close to WIN are forced results: found by the search within MAX_PLY, or read from the tablebase
+    private static final int MATE_RANGE = MAX_PLY + Tablebase.MAX_DISTANCE;
+    private static final int INFINITY = WIN + 1;
+    // Nodes between clock reads, a power of two
+    private static final int CHECK_INTERVAL = 1024;
+    // Table created for a parallel engine that was not given one, since helpers only help through the table
+    private static final int HELPER_TABLE_MEGABYTES = 16;
+    // Move ordering keys, highest first: the transposition table's move, captures (longer chains first), the two
+    // killers of the ply, then quiet moves by history score, which is kept below KILLER
+    private static final int HASH_MOVE = 1 << 30;
+    private static final int CAPTURE = 1 << 29;
+    private static final int KILLER = 1 << 27;
+    private static final int HISTORY_LIMIT = 1 << 20;
+    /**
+     * Server-wide table used by engines created without one. Set once at server start, null for no table.
+     */
+    public static TranspositionTable sharedTable = null;
+    /**
+     * Server-wide endgame tablebase given to every new engine. Set once at server start, null for none.
+     */
+    public static Tablebase sharedTablebase = null;
+    /**
+     * Server-wide opening book given to every new engine. Set once at server start, null for none.
+     */
+    public static OpeningBook sharedBook = null;
+    /**
+     * Server-wide evaluation weights given to every new engine. Set once at server start.
+     */
+    public static Evaluator sharedEvaluator = Evaluator.DEFAULT;
+
+    private final long budgetNanos;
+    private final int maxDepth;
+    private final TranspositionTable table;
+    private final Worker main = new Worker(0);
+    private final Worker[] helpers;
+    private Tablebase tablebase = sharedTablebase;
+    private OpeningBook book = sharedBook;
+    private Evaluator evaluator = sharedEvaluator;
+    private boolean ordering = true;
+    private ExecutorService helperPool;
+    private volatile boolean stopped;
+    private volatile long started;
+
+    /**
+     * Creates an engine that searches as deep as it can within the budget
+     *
+     * @param budgetMillis Time budget per search in milliseconds
+     */
+    public Engine(long budgetMillis) {
+        this(budgetMillis, MAX_PLY / 2);
+    }
+
+    /**
+     * Creates an engine using the shared transposition table
+     *
+     * @param budgetMillis Time budget per search in milliseconds
+     * @param maxDepth     Deepest iteration to run, in plies
+     * @throws IllegalArgumentException when the budget or depth is not positive.
+     */
+    public Engine(long budgetMillis, int maxDepth) {
+        this(budgetMillis, maxDepth, sharedTable);
+    }
+
+    /**
+     * @param budgetMillis Time budget per search in milliseconds
+     * @param maxDepth     Deepest iteration to run, in plies
+     * @param table        Transposition table, or null to search without one
+     * @throws IllegalArgumentException when the budget or depth is not positive.
+     */
+    public Engine(long budgetMillis, int maxDepth, TranspositionTable table) {
+        this(budgetMillis, maxDepth, table, 1);
+    }
+
+    /**
+     * @param budgetMillis Time budget per search in milliseconds
+     * @param maxDepth     Deepest iteration to run, in plies
+     * @param table        Transposition table shared by all threads. If null, a single-threaded engine searches
+     *                     without one and a parallel engine creates its own.
+     * @param threads      Search threads, including the calling thread
+     * @throws IllegalArgumentException when the budget, depth or thread count is not positive.
+     */
+    public Engine(long budgetMillis, int maxDepth, TranspositionTable table, int threads) {
+        if (budgetMillis <= 0) {
+            throw new IllegalArgumentException("Time budget must be positive");
+        } else if (maxDepth <= 0 || maxDepth >= MAX_PLY) {
+            throw new IllegalArgumentException("Depth must be between 1 and " + (MAX_PLY - 1));
+        } else if (threads <= 0) {
+            throw new IllegalArgumentException("Engine needs at least one thread");
+        }
+        this.budgetNanos = Math.min(budgetMillis, Long.MAX_VALUE / 1000000L) * 1000000L;
+        this.maxDepth = maxDepth;
+        if (table == null && threads > 1) {
+            table = new TranspositionTable(HELPER_TABLE_MEGABYTES);
+        }
+        this.table = table;
+        this.helpers = new Worker[threads - 1];
+        for (int i = 0; i < helpers.length; i++) {
+            helpers[i] = new Worker(i + 1);
+        }
+    }
+
+    /**
+     * Picks a move for the side to move. Returns within the time budget, give or take one clock check interval. A book
+     * move is returned at once, with depth 0 and no nodes.
+     *
+     * @param position Game to search. Not modified.
+     * @return Chosen move and search statistics, with nodes summed over all threads
+     */
+    public SearchResult search(Game position) {
+        long start = System.nanoTime();
+        if (book != null) {
+            // The first two plies' move buffers are free until the search starts
+            int move = book.choose(position, ThreadLocalRandom.current(), main.moves[0], main.moves[1]);
+            int[] legal = main.moves[0];
+            for (int i = position.legalMoves(legal) - 1; i >= 0 && move != 0; i--) {
+                if (legal[i] == move) {
+                    return new SearchResult(move, 0, 0, 0, System.nanoTime() - start);
+                }
+            }
+        }
+        started = start;
+        stopped = false;
+        if (table != null) {
+            table.newSearch();
+        }
+        int[] result;
+        long nodes;
+        long expanded;
+        long searched;
+        try {
+            List<Future<?>> running = new ArrayList<>();
+            if (helpers.length > 0) {
+                if (helperPool == null) {
+                    helperPool = Executors.newFixedThreadPool(helpers.length, runnable -> {
+                        Thread thread = new Thread(runnable, "engine-helper");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+                for (Worker helper : helpers) {
+                    running.add(helperPool.submit(() -> helper.iterate(position)));
+                }
+            }
+            result = main.iterate(position);
+            stopped = true;
+            nodes = main.nodes;
+            expanded = main.expanded;
+            searched = main.searched;
+            for (int i = 0; i < running.size(); i++) {
+                try {
+                    running.get(i).get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    // A helper failing only costs speed, the main result stands
+                    e.printStackTrace();
+                }
+                nodes += helpers[i].nodes;
+                expanded += helpers[i].expanded;
+                searched += helpers[i].searched;
+            }
+        } finally {
+            // Helpers still running after a failure stop at their next clock check
+            stopped = true;
+            if (table != null) {
+                table.endSearch();
+            }
+        }
+        return new SearchResult(result[0], result[1], result[2], nodes, System.nanoTime() - start,
+                expanded == 0 ? 0 : (double) searched / expanded);
+    }
+
+    /**
+     * Sets the endgame tablebase probed during search. Positions found in it are scored exactly and not searched
+     * further.
+     *
+     * @param tablebase Tablebase, or null to search without one
+     */
+    public void setTablebase(Tablebase tablebase) {
+        this.tablebase = tablebase;
+    }
+
+    /**
+     * Sets the opening book. Positions found in it are answered with a book move straight away, without searching.
+     *
+     * @param book Opening book, or null to always search
+     */
+    public void setBook(OpeningBook book) {
+        this.book = book;
+    }
+
+    /**
+     * Sets the static evaluation used at the leaves
+     *
+     * @param evaluator Evaluator
+     */
+    public void setEvaluator(Evaluator evaluator) {
+        this.evaluator = evaluator;
+    }
+
+    /**
+     * Turns killer and history move ordering on or off, for measuring what it saves. On by default. The hash move and
+     * the generator's captures-first order are always used.
+     *
+     * @param ordering True to order quiet moves by the killer and history heuristics
+     */
+    public void setOrdering(boolean ordering) {
+        this.ordering = ordering;
+    }
+
+    /**
+     * Stops the helper threads of a parallel engine. The engine must not be used afterwards.
+     */
+    public void shutdown() {
+        if (helperPool != null) {
+            helperPool.shutdownNow();
+        }
+    }
+
+    /**
+     * Win and loss scores count plies from the root. The table stores them counted from the node instead, so they
+     * stay right when the position turns up at a different ply.
+     */
+    private static int toTable(int score, int ply) {
+        if (score > WIN - MATE_RANGE) {
+            return score + ply;
+        } else if (score < -WIN + MATE_RANGE) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        if (score > WIN - MATE_RANGE) {
+            return score - ply;
+        } else if (score < -WIN + MATE_RANGE) {
+            return score + ply;
+        }
+        return score;
+    }
+
+    /**
+     * One search thread's scratch state: its own copy of the game, move buffers, ordering heuristics and counters
+     */
+    private class Worker {
+        private final int id;
+        private final int[][] moves = new int[MAX_PLY][Moves.MAX_MOVES];
+        private final int[][] orderKeys = new int[MAX_PLY][Moves.MAX_MOVES];
+        // Two quiet moves per ply that recently caused a cutoff there
+        private final int[][] killers = new int[MAX_PLY][2];
+        // Cutoffs caused by each quiet move, by [src][dst], weighted by remaining depth squared
+        private final int[][] history = new int[Game.boardSize][Game.boardSize];
+        private Game game;
+        private long nodes;
+        // Nodes whose moves were searched, and the moves searched in them
+        private long expanded;
+        private long searched;
+        private boolean aborted;
+
+        Worker(int id) {
+            this.id = id;
+        }
+
+        /**
+         * Iterative deepening from the root. Helpers (id above 0) start every other one a ply deeper and rotate the
+         * root move order, so threads spread over different parts of the tree instead of repeating each other.
+         *
+         * @param position Root position, not modified
+         * @return Best move, its score and the deepest finished iteration
+         */
+        int[] iterate(Game position) {
+            game = new Game(position);
+            // Keeps the evaluator's square scores summed up through makeMove/unmakeMove
+            evaluator.attach(game);
+            nodes = 0;
+            expanded = 0;
+            searched = 0;
+            for (int[] slots : killers) {
+                slots[0] = 0;
+                slots[1] = 0;
+            }
+            // Older history still says something about this game, but less than what this search finds
+            ageHistory();
+            aborted = false;
+            int[] rootMoves = moves[0];
+            int count = game.legalMoves(rootMoves);
+            if (count == 0) {
+                return new int[]{-1, -WIN, 0};
+            }
+            for (int i = 0; i < id % count; i++) {
+                int first = rootMoves[0];
+                System.arraycopy(rootMoves, 1, rootMoves, 0, count - 1);
+                rootMoves[count - 1] = first;
+            }
+            int bestMove = rootMoves[0];
+            int bestScore = evaluate();
+            int completed = 0;
+            for (int depth = 1 + id % 2; depth <= maxDepth && count > 1; depth++) {
+                // Try the previous best move first so a cut-short iteration still has it searched
+                for (int i = 0; i < count; i++) {
+                    if (rootMoves[i] == bestMove) {
+                        rootMoves[i] = rootMoves[0];
+                        rootMoves[0] = bestMove;
+                    }
+                }
+                int alpha = -INFINITY;
+                int iterationBest = bestMove;
+                for (int i = 0; i < count; i++) {
+                    game.makeMove(rootMoves[i]);
+                    int score = -negamax(depth - 1, 1, -INFINITY, -alpha);
+                    game.unmakeMove();
+                    if (aborted) {
+                        break;
+                    }
+                    if (score > alpha) {
+                        alpha = score;
+                        iterationBest = rootMoves[i];
+                    }
+                }
+                if (aborted) {
+                    break;
+                }
+                bestMove = iterationBest;
+                bestScore = alpha;
+                completed = depth;
+                if (Math.abs(bestScore) > WIN - MATE_RANGE) {
+                    break; // Forced result, deeper search cannot change it
+                }
+            }
+            return new int[]{bestMove, bestScore, completed};
+        }
+
+        /**
+         * Counts a node and checks the clock and stop flag every CHECK_INTERVAL nodes
+         *
+         * @return True if the search has to stop
+         */
+        private boolean tick() {
+            if ((++nodes & CHECK_INTERVAL - 1) == 0 && (stopped || System.nanoTime() - started > budgetNanos)) {
+                aborted = true;
+            }
+            return aborted;
+        }
+
+        private int negamax(int depth, int ply, int alpha, int beta) {
+            // Checked before the depth runs out, so leaves get the exact result instead of a material guess
+            if (tablebase != null) {
+                int result = tablebase.probe(game.getBitboard(RED), game.getBitboard(WHITE), game.getKings(),
+                        game.turn.getColor() == WHITE);
+                if (Tablebase.isWin(result)) {
+                    return WIN - ply - Tablebase.distance(result);
+                } else if (Tablebase.isLoss(result)) {
+                    return -WIN + ply + Tablebase.distance(result);
+                } else if (result == Tablebase.DRAW) {
+                    return 0;
+                }
+            }
+            if (depth <= 0 || ply >= MAX_PLY - 1) {
+                return quiesce(ply, alpha, beta);
+            }
+            if (tick()) {
+                return 0;
+            }
+            long key = 0;
+            int hashMove = 0;
+            if (table != null) {
+                key = game.positionKey();
+                long entry = table.probe(key);
+                if (entry != 0) {
+                    hashMove = TranspositionTable.move(entry);
+                    if (TranspositionTable.depth(entry) >= depth) {
+                        int score = fromTable(TranspositionTable.score(entry), ply);
+                        int bound = TranspositionTable.bound(entry);
+                        if (bound == TranspositionTable.EXACT
+                                || bound == TranspositionTable.LOWER && score >= beta
+                                || bound == TranspositionTable.UPPER && score <= alpha) {
+                            return score;
+                        }
+                    }
+                }
+            }
+            int[] buffer = moves[ply];
+            int count = game.legalMoves(buffer);
+            if (count == 0) {
+                return -WIN + ply;
+            }
+            int[] keys = orderKeys[ply];
+            for (int i = 0; i < count; i++) {
+                keys[i] = orderKey(buffer[i], hashMove, ply);
+            }
+            int originalAlpha = alpha;
+            int best = -INFINITY;
+            int bestMove = 0;
+            expanded++;
+            for (int i = 0; i < count; i++) {
+                // Selection sort one move at a time, so a cutoff saves ordering the rest
+                int pick = i;
+                for (int j = i + 1; j < count; j++) {
+                    if (keys[j] > keys[pick]) {
+                        pick = j;
+                    }
+                }
+                int move = buffer[pick];
+                buffer[pick] = buffer[i];
+                buffer[i] = move;
+                keys[pick] = keys[i];
+                searched++;
+                game.makeMove(buffer[i]);
+                int score = -negamax(depth - 1, ply + 1, -beta, -alpha);
+                game.unmakeMove();
+                if (aborted) {
+                    return 0;
+                }
+                if (score > best) {
+                    best = score;
+                    bestMove = buffer[i];
+                    if (score > alpha) {
+                        alpha = score;
+                        if (alpha >= beta) {
+                            cutoff(buffer[i], depth, ply);
+                            break;
+                        }
+                    }
+                }
+            }
+            if (table != null) {
+                int bound = best <= originalAlpha ? TranspositionTable.UPPER
+                        : best >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+                table.store(key, bestMove, toTable(best, ply), depth, bound);
+            }
+            return best;
+        }
+
+        /**
+         * Ordering key of a move at a ply. Higher is tried first.
+         */
+        private int orderKey(int move, int hashMove, int ply) {
+            if (move == hashMove) {
+                return HASH_MOVE;
+            } else if (Moves.isJump(move)) {
+                return CAPTURE + Moves.jumps(move);
+            } else if (!ordering) {
+                return 0;
+            } else if (move == killers[ply][0]) {
+                return KILLER + 1;
+            } else if (move == killers[ply][1]) {
+                return KILLER;
+            }
+            return history[Moves.src(move)][Moves.dst(move)];
+        }
+
+        /**
+         * Remembers a quiet move that caused a beta cutoff, as a killer for its ply and in the history table
+         */
+        private void cutoff(int move, int depth, int ply) {
+            if (!ordering || Moves.isJump(move)) {
+                return;
+            }
+            if (killers[ply][0] != move) {
+                killers[ply][1] = killers[ply][0];
+                killers[ply][0] = move;
+            }
+            int[] scores = history[Moves.src(move)];
+            int dst = Moves.dst(move);
+            scores[dst] += depth * depth;
+            if (scores[dst] >= HISTORY_LIMIT) {
+                ageHistory();
+            }
+        }
+
+        private void ageHistory() {
+            for (int[] scores : history) {
+                for (int dst = 0; dst < scores.length; dst++) {
+                    scores[dst] >>= 1;
+                }
+            }
+        }
+
+        /**
+         * Searches captures only, so the static evaluation is never taken in the middle of an exchange
+         */
+        private int quiesce(int ply, int alpha, int beta) {
+            if (tick()) {
+                return 0;
+            }
+            int[] buffer = moves[ply];
+            int count = game.legalMoves(buffer);
+            if (count == 0) {
+                return -WIN + ply;
+            }
+            int best = evaluate();
+            if (best >= beta || ply >= MAX_PLY - 1) {
+                return best;
+            }
+            if (best > alpha) {
+                alpha = best;
+            }
+            for (int i = 0; i < count; i++) {
+                if (!Moves.isJump(buffer[i])) {
+                    continue;
+                }
+                game.makeMove(buffer[i]);
+                int score = -quiesce(ply + 1, -beta, -alpha);
+                game.unmakeMove();
+                if (aborted) {
+                    return 0;
+                }
+                if (score > best) {
+                    best = score;
+                    if (score > alpha) {
+                        alpha = score;
+                        if (alpha >= beta) {
+                            break;
+                        }
+                    }
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Static evaluation from the side to move's point of view
+         */
+        private int evaluate() {
+            return evaluator.evaluate(game);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package game.ai;
+
+import game.Game;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+import static game.Color.RED;
+import static game.Color.WHITE;
+
+/**
+ * Static evaluation of a position, in hundredths of a man. Material, kings, back rank and centre control only depend
+ * on which disk stands on which square, so they are folded into one score table that Game keeps summed up as disks
+ * move (see Game.setSquareScores). Mobility is counted fresh with whole-board bit shifts. Evaluating an attached game
+ * is therefore a handful of bit operations whatever the number of disks.
+ * <p>
+ * Weights can be read from a properties file with the keys man, king, backRank, centre and mobility. Missing keys
+ * keep their default. Instances are immutable and safe to share between threads.
+ */
+public class Evaluator {
+    /**
+     * Weights used when none are loaded
+     */
+    public static final Evaluator DEFAULT = new Evaluator(100, 150, 10, 5, 2);
+    // Squares in the middle four columns of the middle four rows
+    private static final int CENTRE = 1 << 9 | 1 << 10 | 1 << 13 | 1 << 14 | 1 << 17 | 1 << 18 | 1 << 21 | 1 << 22;
+    // Each side's own back row, guarding it against kings
+    private static final int RED_BACK_RANK = 0xF;
+    private static final int WHITE_BACK_RANK = 0xF << 28;
+
+    private final int man;
+    private final int king;
+    private final int backRank;
+    private final int centre;
+    private final int mobility;
+    // Square scores from red's point of view, indexed as in Game.setSquareScores
+    private final int[][] squareScores = new int[4][Game.boardSize];
+
+    /**
+     * @param man      Value of a man
+     * @param king     Value of a king
+     * @param backRank Bonus for a man still on its own back row
+     * @param centre   Bonus for a disk on one of the centre squares
+     * @param mobility Bonus per step or jump open to a side
+     */
+    public Evaluator(int man, int king, int backRank, int centre, int mobility) {
+        this.man = man;
+        this.king = king;
+        this.backRank = backRank;
+        this.centre = centre;
+        this.mobility = mobility;
+        for (int square = 0; square < Game.boardSize; square++) {
+            int bit = 1 << square;
+            int central = (CENTRE & bit) != 0 ? centre : 0;
+            squareScores[0][square] = man + central + ((RED_BACK_RANK & bit) != 0 ? backRank : 0);
+            squareScores[1][square] = king + central;
+            squareScores[2][square] = -(man + central + ((WHITE_BACK_RANK & bit) != 0 ? backRank : 0));
+            squareScores[3][square] = -(king + central);
+        }
+    }
+
+    /**
+     * Reads weights from a properties file
+     *
+     * @param file Properties file
+     * @return Evaluator with those weights, and the default for any that are missing
+     * @throws IOException              when the file cannot be read.
+     * @throws IllegalArgumentException when a weight is not a number.
+     */
+    public static Evaluator load(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(in);
+        }
+        try {
+            return new Evaluator(
+                    Integer.parseInt(properties.getProperty("man", String.valueOf(DEFAULT.man)).trim()),
+                    Integer.parseInt(properties.getProperty("king", String.valueOf(DEFAULT.king)).trim()),
+                    Integer.parseInt(properties.getProperty("backRank", String.valueOf(DEFAULT.backRank)).trim()),
+                    Integer.parseInt(properties.getProperty("centre", String.valueOf(DEFAULT.centre)).trim()),
+                    Integer.parseInt(properties.getProperty("mobility", String.valueOf(DEFAULT.mobility)).trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Weights in " + file + " must be whole numbers", e);
+        }
+    }
+
+    /**
+     * Installs this evaluator's square scores on a game, so evaluate() can read them instead of scanning the board.
+     * Copies made from the game afterwards stay attached.
+     *
+     * @param game Game to attach to
+     */
+    public void attach(Game game) {
+        game.setSquareScores(squareScores);
+    }
+
+    /**
+     * Scores a position for the side to move. Positive is good for that side. Uses the running square score if the
+     * game is attached to this evaluator, and works it out from the bitboards otherwise.
+     *
+     * @param game Position
+     * @return Score in hundredths of a man
+     */
+    public int evaluate(Game game) {
+        int score = game.usesSquareScores(squareScores) ? game.getSquareScore() : squareScore(game);
+        if (mobility != 0) {
+            score += mobility * (game.moveCount(RED) - game.moveCount(WHITE));
+        }
+        return game.turn.getColor() == RED ? score : -score;
+    }
+
+    /**
+     * Sums the square scores over the board from scratch, from red's point of view
+     *
+     * @param game Position
+     * @return Sum of the scores of every disk
+     */
+    int squareScore(Game game) {
+        int kings = game.getKings();
+        int red = game.getBitboard(RED);
+        int white = game.getBitboard(WHITE);
+        return sum(squareScores[0], red & ~kings) + sum(squareScores[1], red & kings)
+                + sum(squareScores[2], white & ~kings) + sum(squareScores[3], white & kings);
+    }
+
+    private static int sum(int[] scores, int bits) {
+        int total = 0;
+        for (; bits != 0; bits &= bits - 1) {
+            total += scores[Integer.numberOfTrailingZeros(bits)];
+        }
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        return "Evaluator{" +
+                "man=" + man +
+                ", king=" + king +
+                ", backRank=" + backRank +
+                ", centre=" + centre +
+                ", mobility=" + mobility +
+                '}';
+    }
+}
@@ -0,0 +1,122 @@
+package game.ai;
+
+import game.Game;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/**
+ * Opening book, as written by OpeningBookBuilder. The file is a sorted array of fixed-size entries (position key, move,
+ * weight), mapped read-only with FileChannel.map and searched by bisection, so a lookup touches a handful of pages
+ * and allocates nothing. Entries for one position are adjacent, heaviest first.
+ * <p>
+ * Positions are keyed by Game.positionKey(), which is stable between runs. Lookups are safe to share between threads.
+ */
+public class OpeningBook {
+    // File header: magic, entry count
+    static final int MAGIC = 0x434b424b;
+    static final int HEADER_BYTES = 8;
+    // Entry: long key, int move, int weight
+    static final int ENTRY_BYTES = 16;
+
+    private final ByteBuffer map;
+    private final int entries;
+
+    private OpeningBook(ByteBuffer map, int entries) {
+        this.map = map;
+        this.entries = entries;
+    }
+
+    /**
+     * Maps a book file. It stays mapped for the life of the process.
+     *
+     * @param file Book written by OpeningBookBuilder
+     * @return Book
+     * @throws IOException when the file cannot be read or is not a book.
+     */
+    public static OpeningBook open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (map.capacity() < HEADER_BYTES || map.getInt(0) != MAGIC
+                    || map.capacity() != HEADER_BYTES + (long) map.getInt(4) * ENTRY_BYTES) {
+                throw new IOException("Not an opening book: " + file);
+            }
+            return new OpeningBook(map, map.getInt(4));
+        }
+    }
+
+    /**
+     * @return Number of (position, move) entries
+     */
+    public int size() {
+        return entries;
+    }
+
+    private long key(int entry) {
+        return map.getLong(HEADER_BYTES + entry * ENTRY_BYTES);
+    }
+
+    /**
+     * Reads every book move for a position into caller-owned buffers, heaviest first. Allocates nothing.
+     *
+     * @param key     Game.positionKey() of the position
+     * @param moves   Destination for the encoded moves. Must hold at least Moves.MAX_MOVES entries.
+     * @param weights Destination for the matching weights, the same length as moves
+     * @return Number of moves written, 0 if the position is not in the book
+     */
+    public int lookup(long key, int[] moves, int[] weights) {
+        // First entry whose key is not below the one wanted
+        int low = 0;
+        int high = entries;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (key(middle) < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        int count = 0;
+        for (int entry = low; entry < entries && key(entry) == key && count < moves.length; entry++) {
+            moves[count] = map.getInt(HEADER_BYTES + entry * ENTRY_BYTES + 8);
+            weights[count] = map.getInt(HEADER_BYTES + entry * ENTRY_BYTES + 12);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Picks a book move at random, each with probability proportional to its weight, so bots do not always open the
+     * same way.
+     *
+     * Allocates nothing, using caller-owned buffers as lookup() does.
+     *
+     * @param game    Position to look up
+     * @param random  Random source
+     * @param moves   Scratch buffer for the book moves. Must hold at least Moves.MAX_MOVES entries.
+     * @param weights Scratch buffer for their weights, the same length as moves
+     * @return Encoded move, or 0 if the position is not in the book
+     */
+    public int choose(Game game, Random random, int[] moves, int[] weights) {
+        int count = lookup(game.positionKey(), moves, weights);
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            total += weights[i];
+        }
+        if (total <= 0) {
+            return 0;
+        }
+        long pick = (long) (random.nextDouble() * total);
+        for (int i = 0; i < count; i++) {
+            pick -= weights[i];
+            if (pick < 0) {
+                return moves[i];
+            }
+        }
+        return moves[count - 1];
+    }
+}
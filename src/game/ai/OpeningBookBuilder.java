@@ -0,0 +1,178 @@
+package game.ai;
+
+import database.MoveLog;
+import game.Game;
+import game.Moves;
+import game.Player;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static game.Color.RED;
+
+/**
+ * Offline builder for OpeningBook files. Replays played games from the starting position and counts how often each
+ * move was played in each of the first few positions; the counts become the book weights.
+ * <p>
+ * Usage: OpeningBookBuilder book plies log..., mining every MoveLog file given into a book of the first plies moves.
+ */
+public class OpeningBookBuilder {
+    private final int plies;
+    // Weights by position key, then move. Sorted by key so the file can be written in order.
+    private final Map<Long, Map<Integer, Integer>> weights = new TreeMap<>();
+    private final Player redPlayer = new Player("red", RED);
+    private final int[] moves = new int[Moves.MAX_MOVES];
+
+    /**
+     * @param plies Number of plies from the start of each game to count
+     * @throws IllegalArgumentException when plies is not positive.
+     */
+    public OpeningBookBuilder(int plies) {
+        if (plies <= 0) {
+            throw new IllegalArgumentException("Book must cover at least one ply");
+        }
+        this.plies = plies;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.out.println("Usage: OpeningBookBuilder <book> <plies> <log>...");
+            return;
+        }
+        OpeningBookBuilder builder = new OpeningBookBuilder(Integer.parseInt(args[1]));
+        for (int i = 2; i < args.length; i++) {
+            builder.addLog(Paths.get(args[i]));
+        }
+        builder.write(Paths.get(args[0]));
+        System.out.println("Wrote " + builder.size() + " book moves to " + args[0]);
+    }
+
+    private Game start() {
+        return new Game("book", redPlayer, redPlayer.opponent("white"), Game.newBoard(), redPlayer, new ArrayList<>());
+    }
+
+    /**
+     * Checks a move against the legal moves of a position
+     *
+     * @return True if the move can be played there
+     */
+    private boolean legal(Game game, int move) {
+        int count = game.legalMoves(moves);
+        for (int i = 0; i < count; i++) {
+            if (moves[i] == move) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Counts a move if the position is still within the book's plies, then plays it
+     */
+    private void play(Game game, int ply, int move) {
+        if (ply < plies) {
+            weights.computeIfAbsent(game.positionKey(), key -> new HashMap<>()).merge(move, 1, Integer::sum);
+        }
+        game.makeMove(move);
+    }
+
+    /**
+     * Adds one game played from the starting position. Stops at the first turn that is not a legal move.
+     *
+     * @param turns Squares visited in each turn, in the form of Game.lastMove
+     */
+    public void addGame(List<List<Integer>> turns) {
+        Game game = start();
+        for (int ply = 0; ply < turns.size() && ply < plies; ply++) {
+            int move = Moves.fromPath(turns.get(ply));
+            if (move < 0 || !legal(game, move)) {
+                return;
+            }
+            play(game, ply, move);
+        }
+    }
+
+    /**
+     * Adds every game in a MoveLog file. Turns from different games can be interleaved. A turn that does not follow
+     * from its game's position is taken as the start of a new game under a reused name if it is legal from the
+     * starting position, and otherwise the game is dropped, which also skips games whose start predates the log.
+     *
+     * @param log MoveLog file
+     * @throws IOException when the file cannot be read.
+     */
+    public void addLog(Path log) throws IOException {
+        Map<String, Game> games = new HashMap<>();
+        Map<String, Integer> played = new HashMap<>();
+        try (BufferedReader in = Files.newBufferedReader(log, StandardCharsets.UTF_8)) {
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                String name = MoveLog.parseGame(line);
+                List<Integer> squares = MoveLog.parseSquares(line);
+                int move = squares == null ? -1 : Moves.fromPath(squares);
+                if (move < 0) {
+                    continue;
+                }
+                Game game = games.get(name);
+                if (game == null || !legal(game, move)) {
+                    game = start();
+                    if (!legal(game, move)) {
+                        games.remove(name);
+                        continue;
+                    }
+                    games.put(name, game);
+                    played.put(name, 0);
+                }
+                // Games are followed to the end even past the book, so their later turns are not mistaken for the
+                // start of a new game
+                int ply = played.get(name);
+                play(game, ply, move);
+                played.put(name, ply + 1);
+            }
+        }
+    }
+
+    /**
+     * @return Number of (position, move) entries collected so far
+     */
+    public int size() {
+        int size = 0;
+        for (Map<Integer, Integer> moves : weights.values()) {
+            size += moves.size();
+        }
+        return size;
+    }
+
+    /**
+     * Writes the book, sorted by position key and heaviest move first within a position
+     *
+     * @param file Destination, overwritten if it exists
+     * @throws IOException when the file cannot be written.
+     */
+    public void write(Path file) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file);
+             DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out))) {
+            data.writeInt(OpeningBook.MAGIC);
+            data.writeInt(size());
+            for (Map.Entry<Long, Map<Integer, Integer>> position : weights.entrySet()) {
+                List<Map.Entry<Integer, Integer>> entries = new ArrayList<>(position.getValue().entrySet());
+                entries.sort((a, b) -> b.getValue() - a.getValue());
+                for (Map.Entry<Integer, Integer> entry : entries) {
+                    data.writeLong(position.getKey());
+                    data.writeInt(entry.getKey());
+                    data.writeInt(entry.getValue());
+                }
+            }
+        }
+    }
+}
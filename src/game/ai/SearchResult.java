@@ -0,0 +1,122 @@
+package game.ai;
+
+import game.Game;
+import game.MoveStatus;
+import game.Moves;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static game.MoveStatus.INVALID_MOVE;
+
+/**
+ * Outcome of one Engine search: the chosen move and the statistics needed to capacity-plan bot load.
+ */
+public class SearchResult {
+    private final int move;
+    private final int score;
+    private final int depth;
+    private final long nodes;
+    private final long elapsedNanos;
+    private final double branchingFactor;
+
+    SearchResult(int move, int score, int depth, long nodes, long elapsedNanos) {
+        this(move, score, depth, nodes, elapsedNanos, 0);
+    }
+
+    SearchResult(int move, int score, int depth, long nodes, long elapsedNanos, double branchingFactor) {
+        this.move = move;
+        this.score = score;
+        this.depth = depth;
+        this.nodes = nodes;
+        this.elapsedNanos = elapsedNanos;
+        this.branchingFactor = branchingFactor;
+    }
+
+    /**
+     * @return Encoded move (see Moves), or -1 if the side to move had no legal move
+     */
+    public int getMove() {
+        return move;
+    }
+
+    /**
+     * @return Squares visited by the move, in the form Game.move(src, dst) takes them pairwise. Empty if there is no
+     * move.
+     */
+    public List<Integer> getPath() {
+        if (move < 0) {
+            return new ArrayList<>();
+        }
+        return Moves.path(move);
+    }
+
+    /**
+     * @return Score from the point of view of the side to move, in hundredths of a man
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * @return Deepest iteration that finished inside the time budget
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Average branching factor of the alpha-beta search: moves searched per node whose moves were searched, before a
+     * cutoff ended the loop. Lower means better move ordering. 0 for a book move.
+     *
+     * @return Moves searched per expanded node
+     */
+    public double getBranchingFactor() {
+        return branchingFactor;
+    }
+
+    public long nodesPerSecond() {
+        if (elapsedNanos == 0) {
+            return 0;
+        }
+        return nodes * 1000000000L / elapsedNanos;
+    }
+
+    /**
+     * Plays the move on a game one hop at a time through Game.move(src, dst)
+     *
+     * @param game Game in the position that was searched
+     * @return Status of the last hop, or the first failure
+     */
+    public MoveStatus play(Game game) {
+        MoveStatus status = INVALID_MOVE;
+        List<Integer> path = getPath();
+        for (int i = 1; i < path.size(); i++) {
+            status = game.move(path.get(i - 1), path.get(i));
+            if (status.failure()) {
+                return status;
+            }
+        }
+        return status;
+    }
+
+    @Override
+    public String toString() {
+        return "SearchResult{" +
+                "path=" + getPath() +
+                ", score=" + score +
+                ", depth=" + depth +
+                ", nodes=" + nodes +
+                ", nps=" + nodesPerSecond() +
+                ", branching=" + branchingFactor +
+                '}';
+    }
+}
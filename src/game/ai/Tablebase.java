@@ -0,0 +1,247 @@
+package game.ai;
+
+import game.Game;
+import game.Player;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static game.Color.RED;
+import static game.Color.WHITE;
+
+/**
+ * Endgame tablebase, as written by TablebaseGenerator. Each material balance (red men, red kings, white men, white
+ * kings) is one file holding a byte per position with red to move. Files are mapped read-only with FileChannel.map, so
+ * the tables take no heap and the OS pages them in as they are used. Positions with white to move are looked up as the
+ * same position turned 180 degrees with the colors swapped.
+ * <p>
+ * A probe result is UNKNOWN, DRAW (neither side can force a win) or the distance to the end of the game in plies plus
+ * one. Odd distances are wins for the side to move and even ones losses, assuming the engine's rule that a side with
+ * no legal move loses. Lookups are read-only and safe to share between threads.
+ */
+public class Tablebase {
+    public static final int UNKNOWN = -1;
+    public static final int DRAW = 0;
+    // Distances are stored in one unsigned byte, with 0 taken by DRAW and 255 left unused
+    static final int MAX_DISTANCE = 253;
+    // File header: magic, board size, packed material
+    static final int MAGIC = 0x434b5442;
+    static final int HEADER_BYTES = 12;
+    // Seven disks can need a file over the 2 GB a single mapping allows
+    static final int MAX_PIECES = 6;
+    private static final int KINDS = MAX_PIECES + 1;
+    static final long[][] BINOMIAL = new long[Game.boardSize + 1][MAX_PIECES + 1];
+
+    static {
+        for (int n = 0; n <= Game.boardSize; n++) {
+            BINOMIAL[n][0] = 1;
+            for (int k = 1; k <= MAX_PIECES && k <= n; k++) {
+                BINOMIAL[n][k] = BINOMIAL[n - 1][k - 1] + BINOMIAL[n - 1][k];
+            }
+        }
+    }
+
+    private final ByteBuffer[] slices = new ByteBuffer[KINDS * KINDS * KINDS * KINDS];
+    private int pieces;
+
+    /**
+     * Creates an empty tablebase, filled in by TablebaseGenerator as it writes each file
+     */
+    Tablebase() {
+    }
+
+    /**
+     * Maps every tablebase file in a directory. Files stay mapped for the life of the process.
+     *
+     * @param directory Directory written by TablebaseGenerator
+     * @return Tablebase covering the material balances found
+     * @throws IOException when the directory cannot be read or holds a damaged or foreign file.
+     */
+    public static Tablebase open(Path directory) throws IOException {
+        Tablebase tablebase = new Tablebase();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.tb")) {
+            for (Path file : files) {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                    tablebase.add(file, map);
+                }
+            }
+        }
+        return tablebase;
+    }
+
+    /**
+     * Adds one mapped file
+     *
+     * @param file Path of the file, for error messages
+     * @param map  File contents, header included
+     * @throws IOException when the file is damaged or for a different board.
+     */
+    void add(Path file, ByteBuffer map) throws IOException {
+        if (map.capacity() < HEADER_BYTES || map.getInt(0) != MAGIC || map.getInt(4) != Game.boardSize) {
+            throw new IOException("Not a tablebase for this board: " + file);
+        }
+        int material = map.getInt(8);
+        int redMen = material >>> 24;
+        int redKings = material >>> 16 & 0xFF;
+        int whiteMen = material >>> 8 & 0xFF;
+        int whiteKings = material & 0xFF;
+        int total = redMen + redKings + whiteMen + whiteKings;
+        if (total > MAX_PIECES || map.capacity() != HEADER_BYTES + size(redMen, redKings, whiteMen, whiteKings)) {
+            throw new IOException("Damaged tablebase file: " + file);
+        }
+        slices[slice(redMen, redKings, whiteMen, whiteKings)] = map;
+        pieces = Math.max(pieces, total);
+    }
+
+    /**
+     * @return Largest number of disks in any loaded material balance. Positions with more disks are never found.
+     */
+    public int getPieces() {
+        return pieces;
+    }
+
+    /**
+     * Looks up a position. Only positions between turns are stored, so a game in the middle of a jump chain is UNKNOWN.
+     *
+     * @param game Position to look up
+     * @return UNKNOWN, DRAW or the distance to the end plus one, from the side to move's point of view
+     */
+    public int probe(Game game) {
+        if (game.chainSquare() >= 0) {
+            return UNKNOWN;
+        }
+        return probe(game.getBitboard(RED), game.getBitboard(WHITE), game.getKings(), game.turn.getColor() == WHITE);
+    }
+
+    /**
+     * Looks up a position between turns, without allocating
+     *
+     * @param red         Red disk bitboard
+     * @param white       White disk bitboard
+     * @param kings       King bitboard
+     * @param whiteToMove True if white is to move
+     * @return UNKNOWN, DRAW or the distance to the end plus one, from the side to move's point of view
+     */
+    int probe(int red, int white, int kings, boolean whiteToMove) {
+        if (Integer.bitCount(red | white) > pieces) {
+            return UNKNOWN;
+        }
+        if (whiteToMove) {
+            int mirrored = rotate(white);
+            white = rotate(red);
+            red = mirrored;
+            kings = rotate(kings);
+        }
+        int redMen = Integer.bitCount(red & ~kings);
+        int redKings = Integer.bitCount(red & kings);
+        int whiteMen = Integer.bitCount(white & ~kings);
+        int whiteKings = Integer.bitCount(white & kings);
+        if (red == 0 || white == 0) {
+            return UNKNOWN;
+        }
+        ByteBuffer map = slices[slice(redMen, redKings, whiteMen, whiteKings)];
+        if (map == null) {
+            return UNKNOWN;
+        }
+        long index = index(red & ~kings, red & kings, white & ~kings, white & kings);
+        return map.get(HEADER_BYTES + (int) index) & 0xFF;
+    }
+
+    /**
+     * Finds who wins the position with best play on both sides. Unlike Game.winner() this looks ahead, so a player
+     * can be named before the game is over.
+     *
+     * @param game Position to look up
+     * @return Winning player, or null if the position is drawn or not in the tablebase
+     */
+    public Player winner(Game game) {
+        int result = probe(game);
+        if (isWin(result)) {
+            return game.turn;
+        } else if (isLoss(result)) {
+            return game.turn.getColor() == game.p1.getColor() ? game.p2 : game.p1;
+        }
+        return null;
+    }
+
+    /**
+     * @param result Probe result
+     * @return True if the side to move wins
+     */
+    public static boolean isWin(int result) {
+        return result > 0 && result % 2 == 0;
+    }
+
+    /**
+     * @param result Probe result
+     * @return True if the side to move loses
+     */
+    public static boolean isLoss(int result) {
+        return result > 0 && result % 2 == 1;
+    }
+
+    /**
+     * @param result Probe result that is a win or a loss
+     * @return Plies until the game ends with best play, 0 if the side to move already has no move
+     */
+    public static int distance(int result) {
+        return result - 1;
+    }
+
+    /**
+     * Turns a bitboard 180 degrees. On a board with an even number of rows this maps square n to boardSize - 1 - n,
+     * which also turns each side's forward direction into the other's.
+     */
+    static int rotate(int bits) {
+        return Integer.reverse(bits) >>> 32 - Game.boardSize;
+    }
+
+    /**
+     * Position of a set of squares in colexicographic order among all sets of the same size. Numeric order of the
+     * bitboards is the same order, so enumerating sets with increasing bitboards counts up from 0.
+     */
+    static long rank(int bits) {
+        long rank = 0;
+        for (int i = 1; bits != 0; i++, bits &= bits - 1) {
+            rank += BINOMIAL[Integer.numberOfTrailingZeros(bits)][i];
+        }
+        return rank;
+    }
+
+    /**
+     * Index of a position with red to move within its material balance's file. Each kind of disk is ranked over the
+     * whole board, so positions with two disks on one square get an index too; they are never probed.
+     */
+    static long index(int redMen, int redKings, int whiteMen, int whiteKings) {
+        long index = rank(redMen);
+        index = index * BINOMIAL[Game.boardSize][Integer.bitCount(redKings)] + rank(redKings);
+        index = index * BINOMIAL[Game.boardSize][Integer.bitCount(whiteMen)] + rank(whiteMen);
+        return index * BINOMIAL[Game.boardSize][Integer.bitCount(whiteKings)] + rank(whiteKings);
+    }
+
+    /**
+     * @return Number of positions in the file for a material balance
+     */
+    static long size(int redMen, int redKings, int whiteMen, int whiteKings) {
+        return BINOMIAL[Game.boardSize][redMen] * BINOMIAL[Game.boardSize][redKings]
+                * BINOMIAL[Game.boardSize][whiteMen] * BINOMIAL[Game.boardSize][whiteKings];
+    }
+
+    private static int slice(int redMen, int redKings, int whiteMen, int whiteKings) {
+        return ((redMen * KINDS + redKings) * KINDS + whiteMen) * KINDS + whiteKings;
+    }
+
+    /**
+     * @return File name for a material balance, such as "2101.tb" for two red men and a red king against a white king
+     */
+    static String fileName(int redMen, int redKings, int whiteMen, int whiteKings) {
+        return "" + redMen + redKings + whiteMen + whiteKings + ".tb";
+    }
+}
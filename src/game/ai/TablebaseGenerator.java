@@ -0,0 +1,294 @@
+package game.ai;
+
+import game.Disk;
+import game.Game;
+import game.Moves;
+import game.Player;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import static game.Color.RED;
+import static game.Color.WHITE;
+import static game.Disk.*;
+
+/**
+ * Offline generator for the files read by Tablebase. Solves every material balance with up to a given number of disks
+ * by retrograde analysis, fewest disks first and, within a disk count, fewest men first. Captures and crowning only
+ * ever lead to balances solved earlier, so each balance only has to be iterated against itself and its color mirror.
+ * <p>
+ * Moves come from Game.legalMoves and makeMove, so the tables follow exactly the rules the server plays by. Memory use
+ * grows with the largest balance: four disks need well under a gigabyte, five several.
+ * <p>
+ * Usage: TablebaseGenerator directory [pieces], where pieces defaults to 4.
+ */
+public class TablebaseGenerator {
+    private static final int DEFAULT_PIECES = 4;
+    private static final int NONE = Integer.MAX_VALUE;
+
+    private final Path directory;
+    private final int pieces;
+    // Balances finished so far, mapped back in from disk to answer moves that capture or crown
+    private final Tablebase solved = new Tablebase();
+    private final Player redPlayer = new Player("red", RED);
+    private final Game game;
+    private final int[] moves = new int[Moves.MAX_MOVES];
+    // combinations[k] holds every bitboard with k squares set, in increasing order, so its index is its rank
+    private final int[][] combinations = new int[Tablebase.MAX_PIECES + 1][];
+
+    /**
+     * @param directory Output directory, created if missing. Existing files are overwritten.
+     * @param pieces    Largest number of disks on the board
+     * @throws IllegalArgumentException when pieces is under 2 or more than Tablebase can map.
+     */
+    public TablebaseGenerator(Path directory, int pieces) {
+        if (pieces < 2 || pieces > Tablebase.MAX_PIECES) {
+            throw new IllegalArgumentException("Tablebase pieces must be between 2 and " + Tablebase.MAX_PIECES);
+        }
+        this.directory = directory;
+        this.pieces = pieces;
+        List<Disk> board = Game.newBoard();
+        board.replaceAll(d -> EMPTY);
+        this.game = new Game("tablebase", redPlayer, redPlayer.opponent("white"), board, redPlayer, new ArrayList<>());
+        for (int k = 0; k <= pieces; k++) {
+            combinations[k] = new int[(int) Tablebase.BINOMIAL[Game.boardSize][k]];
+            int bits = (1 << k) - 1;
+            for (int i = 0; i < combinations[k].length; i++) {
+                combinations[k][i] = bits;
+                if (bits != 0) {
+                    // Next larger bitboard with the same number of bits set
+                    int low = bits & -bits;
+                    int ripple = bits + low;
+                    bits = ripple | ((bits ^ ripple) >>> 2) / low;
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: TablebaseGenerator <directory> [pieces]");
+            return;
+        }
+        int pieces = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PIECES;
+        new TablebaseGenerator(Paths.get(args[0]), pieces).generate();
+    }
+
+    /**
+     * Solves and writes every material balance
+     *
+     * @return Tablebase over the files written
+     * @throws IOException when a file cannot be written.
+     */
+    public Tablebase generate() throws IOException {
+        Files.createDirectories(directory);
+        for (int total = 2; total <= pieces; total++) {
+            for (int men = 0; men <= total; men++) {
+                for (int redMen = 0; redMen <= men; redMen++) {
+                    int whiteMen = men - redMen;
+                    for (int redKings = 0; redKings <= total - men; redKings++) {
+                        int whiteKings = total - men - redKings;
+                        int[] material = {redMen, redKings, whiteMen, whiteKings};
+                        int[] mirror = {whiteMen, whiteKings, redMen, redKings};
+                        // Each pair is solved together, when the loop reaches the half with more red men
+                        if (redMen + redKings > 0 && whiteMen + whiteKings > 0
+                                && (redMen > whiteMen || redMen == whiteMen && redKings >= whiteKings)) {
+                            long started = System.nanoTime();
+                            solve(material, mirror);
+                            System.out.printf("%s %d ms%n", Tablebase.fileName(redMen, redKings, whiteMen, whiteKings),
+                                    (System.nanoTime() - started) / 1000000);
+                        }
+                    }
+                }
+            }
+        }
+        return solved;
+    }
+
+    /**
+     * Solves a material balance together with its color mirror, which is what its moves lead to when nothing is
+     * captured or crowned, then writes both files.
+     * <p>
+     * First every move of every position is generated once. Moves into the pair are kept as edges; moves out of it
+     * are looked up in the finished files and folded into two bounds per position. Then distance layers are filled in
+     * order: a position wins in d plies (d odd) if a move reaches a loss in d - 1, and loses in d plies (d even) once
+     * every move reaches a win in at most d - 1. Whatever is left after the layers stop changing is a draw.
+     */
+    private void solve(int[] material, int[] mirror) throws IOException {
+        int[][] slices = Arrays.equals(material, mirror) ? new int[][]{material} : new int[][]{material, mirror};
+        long[] base = new long[slices.length + 1];
+        for (int i = 0; i < slices.length; i++) {
+            base[i + 1] = base[i] + Tablebase.size(slices[i][0], slices[i][1], slices[i][2], slices[i][3]);
+        }
+        if (base[slices.length] > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Material balance too large to solve in memory");
+        }
+        int size = (int) base[slices.length];
+        byte[] value = new byte[size];
+        BitSet invalid = new BitSet(size);
+        // Over the moves that capture or crown out of the pair: the quickest win they give, NONE if none, and the
+        // quickest loss they still allow, 0 if they allow any and NONE if one of them reaches a draw.
+        int[] exitWin = new int[size];
+        int[] exitLoss = new int[size];
+        int[] first = new int[size + 1];
+        int[] edges = new int[size];
+        int edgeCount = 0;
+        int longestExit = 0;
+
+        int position = 0;
+        for (int[] slice : slices) {
+            for (int redMen : combinations[slice[0]]) {
+                for (int redKings : combinations[slice[1]]) {
+                    for (int whiteMen : combinations[slice[2]]) {
+                        for (int whiteKings : combinations[slice[3]]) {
+                            first[position] = edgeCount;
+                            exitWin[position] = NONE;
+                            exitLoss[position] = 0;
+                            int occupied = redMen | redKings | whiteMen | whiteKings;
+                            if (Integer.bitCount(occupied) != slice[0] + slice[1] + slice[2] + slice[3]) {
+                                invalid.set(position++);
+                                continue;
+                            }
+                            setUp(redMen, redKings, whiteMen, whiteKings);
+                            int count = game.legalMoves(moves);
+                            if (count == 0) {
+                                value[position] = 1; // Lost, 0 plies to go
+                            }
+                            for (int i = 0; i < count; i++) {
+                                game.makeMove(moves[i]);
+                                // White is to move now. Turn the board so it is red to move again.
+                                int red = Tablebase.rotate(game.getBitboard(WHITE));
+                                int white = Tablebase.rotate(game.getBitboard(RED));
+                                int kings = Tablebase.rotate(game.getKings());
+                                game.unmakeMove();
+                                int target = find(slices, base, red, white, kings);
+                                if (target >= 0) {
+                                    if (edgeCount == edges.length) {
+                                        edges = Arrays.copyOf(edges, edges.length * 2);
+                                    }
+                                    edges[edgeCount++] = target;
+                                    continue;
+                                }
+                                // Out of the pair: a capture of the last disk, or a finished balance
+                                int result = red == 0 ? 1 : solved.probe(red, white, kings, false);
+                                if (result == Tablebase.UNKNOWN) {
+                                    throw new IllegalStateException("Successor balance not solved yet");
+                                } else if (Tablebase.isLoss(result)) {
+                                    exitWin[position] = Math.min(exitWin[position], result);
+                                    longestExit = Math.max(longestExit, result);
+                                } else if (Tablebase.isWin(result) && exitLoss[position] != NONE) {
+                                    exitLoss[position] = Math.max(exitLoss[position], result);
+                                    longestExit = Math.max(longestExit, result);
+                                } else {
+                                    exitLoss[position] = NONE;
+                                }
+                            }
+                            position++;
+                        }
+                    }
+                }
+            }
+        }
+        first[size] = edgeCount;
+
+        int lastChange = 0;
+        for (int distance = 1; distance <= longestExit || distance <= lastChange + 2; distance++) {
+            boolean win = distance % 2 == 1;
+            int code = distance + 1;
+            for (position = 0; position < size; position++) {
+                if (value[position] != 0 || invalid.get(position)) {
+                    continue;
+                }
+                boolean resolved;
+                if (win) {
+                    // A reply lost in distance - 1 plies has code distance
+                    resolved = exitWin[position] == distance;
+                    for (int i = first[position]; i < first[position + 1] && !resolved; i++) {
+                        resolved = (value[edges[i]] & 0xFF) == distance;
+                    }
+                } else {
+                    resolved = exitWin[position] == NONE && exitLoss[position] <= distance;
+                    for (int i = first[position]; i < first[position + 1] && resolved; i++) {
+                        resolved = Tablebase.isWin(value[edges[i]] & 0xFF);
+                    }
+                }
+                if (resolved) {
+                    if (distance > Tablebase.MAX_DISTANCE) {
+                        throw new IllegalStateException("Distance to end too long to store: " + distance);
+                    }
+                    value[position] = (byte) code;
+                    lastChange = distance;
+                }
+            }
+        }
+
+        for (int i = 0; i < slices.length; i++) {
+            write(slices[i], value, (int) base[i], (int) (base[i + 1] - base[i]));
+        }
+    }
+
+    /**
+     * Puts the scratch game in a position with red to move and no jump chain in progress
+     */
+    private void setUp(int redMen, int redKings, int whiteMen, int whiteKings) {
+        for (int bits = game.getBitboard(RED) | game.getBitboard(WHITE); bits != 0; bits &= bits - 1) {
+            game.board.set(Integer.numberOfTrailingZeros(bits), EMPTY);
+        }
+        place(redMen, RED_DISK);
+        place(redKings, RED_KING);
+        place(whiteMen, WHITE_DISK);
+        place(whiteKings, WHITE_KING);
+    }
+
+    private void place(int bits, Disk disk) {
+        for (; bits != 0; bits &= bits - 1) {
+            game.board.set(Integer.numberOfTrailingZeros(bits), disk);
+        }
+    }
+
+    /**
+     * Finds a red-to-move position among the slices being solved
+     *
+     * @return Index into the pair's arrays, or -1 if the position belongs to another balance
+     */
+    private static int find(int[][] slices, long[] base, int red, int white, int kings) {
+        int redMen = red & ~kings;
+        int redKings = red & kings;
+        int whiteMen = white & ~kings;
+        int whiteKings = white & kings;
+        for (int i = 0; i < slices.length; i++) {
+            if (Integer.bitCount(redMen) == slices[i][0] && Integer.bitCount(redKings) == slices[i][1]
+                    && Integer.bitCount(whiteMen) == slices[i][2] && Integer.bitCount(whiteKings) == slices[i][3]) {
+                return (int) (base[i] + Tablebase.index(redMen, redKings, whiteMen, whiteKings));
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Writes one balance's file and maps it into the solved tablebase
+     */
+    private void write(int[] slice, byte[] value, int offset, int length) throws IOException {
+        Path file = directory.resolve(Tablebase.fileName(slice[0], slice[1], slice[2], slice[3]));
+        try (OutputStream out = Files.newOutputStream(file);
+             DataOutputStream data = new DataOutputStream(out)) {
+            data.writeInt(Tablebase.MAGIC);
+            data.writeInt(Game.boardSize);
+            data.writeInt(slice[0] << 24 | slice[1] << 16 | slice[2] << 8 | slice[3]);
+            data.write(value, offset, length);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            solved.add(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+}
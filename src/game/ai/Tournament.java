@@ -0,0 +1,294 @@
+package game.ai;
+
+import game.Game;
+import game.MoveStatus;
+import game.Moves;
+import game.Player;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static game.Color.RED;
+import static game.Color.WHITE;
+
+/**
+ * Headless self-play between two contestants, for soak-testing the rules and the engine without the UI or network.
+ * Games run in parallel on a fixed pool, alternating colors, and every hop is played through Game.move(src, dst) so
+ * the same checks as online play apply. A game that reaches the ply limit is a draw.
+ * <p>
+ * Contestants are written as "random" for a uniformly random mover, "depth:N" for an engine searching N plies, or
+ * "time:MS" for an engine with MS milliseconds per move.
+ * <p>
+ * Usage: Tournament games first second [threads] [maxPlies] [seed]
+ */
+public class Tournament {
+    /**
+     * Anomalies kept for the report. More are counted but not kept.
+     */
+    static final int MAX_ANOMALIES = 20;
+
+    private final String first;
+    private final String second;
+    private final int maxPlies;
+    private final long seed;
+
+    /**
+     * Picks moves for one side of one game. A new one is made for every game, so it may keep state.
+     */
+    interface Contestant {
+        /**
+         * @param game   Position with the contestant to move, at least one legal move and no chain in progress
+         * @param random Random source for this game
+         * @return Encoded legal move
+         */
+        int choose(Game game, Random random);
+    }
+
+    /**
+     * @param first    Contestant spec, red in even games
+     * @param second   Contestant spec, red in odd games
+     * @param maxPlies Turns after which a game is called a draw
+     * @param seed     Base seed. Game i uses seed + i, so a run can be repeated.
+     * @throws IllegalArgumentException when a spec is malformed or maxPlies is not positive.
+     */
+    public Tournament(String first, String second, int maxPlies, long seed) {
+        if (maxPlies <= 0) {
+            throw new IllegalArgumentException("Games must be allowed at least one ply");
+        }
+        contestant(first);
+        contestant(second);
+        this.first = first;
+        this.second = second;
+        this.maxPlies = maxPlies;
+        this.seed = seed;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length < 3) {
+            System.out.println("Usage: Tournament <games> <first> <second> [threads] [maxPlies] [seed]");
+            return;
+        }
+        int games = Integer.parseInt(args[0]);
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        int maxPlies = args.length > 4 ? Integer.parseInt(args[4]) : 200;
+        long seed = args.length > 5 ? Long.parseLong(args[5]) : 451;
+        System.out.println(games + " games of " + args[1] + " against " + args[2] + " on " + threads + " threads");
+        Results results = new Tournament(args[1], args[2], maxPlies, seed).play(games, threads);
+        System.out.println(results);
+        for (String anomaly : results.getAnomalies()) {
+            System.out.println("  " + anomaly);
+        }
+    }
+
+    /**
+     * Parses a contestant spec
+     *
+     * @throws IllegalArgumentException when the spec is malformed.
+     */
+    static Contestant contestant(String spec) {
+        if (spec.equals("random")) {
+            int[] moves = new int[Moves.MAX_MOVES];
+            return (game, random) -> moves[random.nextInt(game.legalMoves(moves))];
+        }
+        int colon = spec.indexOf(':');
+        int value;
+        try {
+            value = Integer.parseInt(spec.substring(colon + 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed contestant: " + spec);
+        }
+        Engine engine;
+        if (spec.startsWith("depth:")) {
+            engine = new Engine(Long.MAX_VALUE, value, null);
+        } else if (spec.startsWith("time:")) {
+            engine = new Engine(value, Engine.MAX_PLY / 2, null);
+        } else {
+            throw new IllegalArgumentException("Malformed contestant: " + spec);
+        }
+        return (game, random) -> engine.search(game).getMove();
+    }
+
+    /**
+     * Plays the games and waits for all of them
+     *
+     * @param games   Number of games
+     * @param threads Games played at once
+     * @return Totals over every game
+     * @throws InterruptedException when interrupted while waiting.
+     */
+    public Results play(int games, int threads) throws InterruptedException {
+        Results results = new Results();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> running = new ArrayList<>(games);
+            for (int i = 0; i < games; i++) {
+                int index = i;
+                running.add(pool.submit(() -> playGame(index, results)));
+            }
+            for (Future<?> game : running) {
+                try {
+                    game.get();
+                } catch (ExecutionException e) {
+                    results.anomaly("Game crashed: " + e.getCause(), true);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        results.elapsedNanos = System.nanoTime() - start;
+        return results;
+    }
+
+    /**
+     * Plays one game to the end, checking every hop
+     */
+    private void playGame(int index, Results results) {
+        boolean firstIsRed = index % 2 == 0;
+        // Names must differ even when a contestant plays itself, since turns are told apart by name
+        Player red = new Player("red " + (firstIsRed ? first : second), RED);
+        Player white = red.opponent("white " + (firstIsRed ? second : first));
+        Contestant redSide = contestant(firstIsRed ? first : second);
+        Contestant whiteSide = contestant(firstIsRed ? second : first);
+        Random random = new Random(seed + index);
+        Game game = new Game("tournament" + index, red, white, Game.newBoard(), red, new ArrayList<>());
+        int[] moves = new int[Moves.MAX_MOVES];
+        int ply = 0;
+        while (game.winner() == null && ply < maxPlies) {
+            if (game.legalMoves(moves) == 0) {
+                results.anomaly("Game " + index + " ply " + ply + ": no legal move but no winner", false);
+                return;
+            }
+            int move = (game.turn.getColor() == RED ? redSide : whiteSide).choose(game, random);
+            List<Integer> path = Moves.path(move);
+            for (int hop = 1; hop < path.size(); hop++) {
+                MoveStatus status = game.move(path.get(hop - 1), path.get(hop));
+                boolean last = hop == path.size() - 1;
+                if (status.failure() || status.complete() != last) {
+                    results.anomaly("Game " + index + " ply " + ply + ": " + path + " hop " + hop + " gave "
+                            + status, status.serious());
+                    return;
+                }
+            }
+            ply++;
+            results.moves.incrementAndGet();
+        }
+        Player winner = game.winner();
+        if (winner == null) {
+            results.draws.incrementAndGet();
+        } else {
+            (winner.getColor() == RED ? results.redWins : results.whiteWins).incrementAndGet();
+            (winner.getColor() == RED == firstIsRed ? results.firstWins : results.secondWins).incrementAndGet();
+        }
+        results.games.incrementAndGet();
+    }
+
+    /**
+     * Totals of a tournament. Counters are updated by the game threads as they go.
+     */
+    public static class Results {
+        private final AtomicLong games = new AtomicLong();
+        private final AtomicLong moves = new AtomicLong();
+        private final AtomicLong firstWins = new AtomicLong();
+        private final AtomicLong secondWins = new AtomicLong();
+        private final AtomicLong draws = new AtomicLong();
+        private final AtomicLong redWins = new AtomicLong();
+        private final AtomicLong whiteWins = new AtomicLong();
+        private final AtomicLong seriousAnomalies = new AtomicLong();
+        private final AtomicLong anomalyCount = new AtomicLong();
+        private final List<String> anomalies = Collections.synchronizedList(new ArrayList<>());
+        private long elapsedNanos;
+
+        private void anomaly(String description, boolean serious) {
+            anomalyCount.incrementAndGet();
+            if (serious) {
+                seriousAnomalies.incrementAndGet();
+            }
+            if (anomalies.size() < MAX_ANOMALIES) {
+                anomalies.add((serious ? "SERIOUS " : "") + description);
+            }
+        }
+
+        /**
+         * @return Games played to a result or to the ply limit. Games cut short by an anomaly are not counted.
+         */
+        public long getGames() {
+            return games.get();
+        }
+
+        /**
+         * @return Complete turns played, in every game including those cut short
+         */
+        public long getMoves() {
+            return moves.get();
+        }
+
+        public long getFirstWins() {
+            return firstWins.get();
+        }
+
+        public long getSecondWins() {
+            return secondWins.get();
+        }
+
+        public long getDraws() {
+            return draws.get();
+        }
+
+        public long getRedWins() {
+            return redWins.get();
+        }
+
+        public long getWhiteWins() {
+            return whiteWins.get();
+        }
+
+        /**
+         * @return Hops that failed, ended the turn early or late, or crashed a game
+         */
+        public long getAnomalyCount() {
+            return anomalyCount.get();
+        }
+
+        /**
+         * @return Anomalies whose MoveStatus is serious(), or that crashed a game
+         */
+        public long getSeriousAnomalies() {
+            return seriousAnomalies.get();
+        }
+
+        /**
+         * @return Descriptions of the first MAX_ANOMALIES anomalies
+         */
+        public List<String> getAnomalies() {
+            synchronized (anomalies) {
+                return new ArrayList<>(anomalies);
+            }
+        }
+
+        public double gamesPerSecond() {
+            return elapsedNanos == 0 ? 0 : games.get() * 1e9 / elapsedNanos;
+        }
+
+        public double movesPerSecond() {
+            return elapsedNanos == 0 ? 0 : moves.get() * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d games, %d moves in %.2f s: %.1f games/s, %.0f moves/s%n"
+                            + "first %d, second %d, draws %d (red %d, white %d), %.1f moves/game%n"
+                            + "anomalies %d, serious %d", games.get(), moves.get(), elapsedNanos / 1e9,
+                    gamesPerSecond(), movesPerSecond(), firstWins.get(), secondWins.get(), draws.get(),
+                    redWins.get(), whiteWins.get(), games.get() == 0 ? 0.0 : (double) moves.get() / games.get(),
+                    anomalyCount.get(), seriousAnomalies.get());
+        }
+    }
+}
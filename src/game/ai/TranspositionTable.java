@@ -0,0 +1,186 @@
+package game.ai;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-size cache of search results keyed by Game.positionKey(). Entries live in two parallel primitive long arrays
+ * (key and packed data), so even a table of several hundred megabytes is two objects to the garbage collector.
+ * <p>
+ * Entries are grouped in buckets of two. A store overwrites the same position if present, otherwise the entry from the
+ * oldest search, then the shallower one. Each key is stored XORed with its data and checked on probe, so threads can
+ * share one table without locking: a torn write just reads as a miss.
+ * <p>
+ * Searches running at the same time, such as several bots thinking at once, share one age. The age moves on only when
+ * a search starts on a table no other search is using, so no search makes another's fresh entries look old.
+ * <p>
+ * Data layout, from the lowest bit: 31 bits move (0 for none), 21 bits score, 7 bits depth, 2 bits bound, 3 bits age.
+ */
+public class TranspositionTable {
+    public static final int EXACT = 1;
+    public static final int LOWER = 2;
+    public static final int UPPER = 3;
+    private static final int ENTRY_BYTES = 16;
+    private static final int BUCKET = 2;
+    private static final int SCORE_SHIFT = 31;
+    private static final int SCORE_BITS = 21;
+    private static final int DEPTH_SHIFT = SCORE_SHIFT + SCORE_BITS;
+    private static final int DEPTH_BITS = 7;
+    private static final int BOUND_SHIFT = DEPTH_SHIFT + DEPTH_BITS;
+    private static final int AGE_SHIFT = BOUND_SHIFT + 2;
+    private static final int AGES = 8;
+
+    private final long[] keys;
+    private final long[] data;
+    private final int bucketMask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder collisions = new LongAdder();
+    private volatile int age;
+    // Searches between newSearch() and endSearch(), guarded by this
+    private int searching;
+
+    /**
+     * Creates a table using at most the given amount of memory, rounded down to a power of two entries
+     *
+     * @param megabytes Memory budget
+     * @throws IllegalArgumentException when the budget is under 1 MB or would need arrays longer than Java allows.
+     */
+    public TranspositionTable(int megabytes) {
+        if (megabytes < 1) {
+            throw new IllegalArgumentException("Transposition table needs at least 1 MB");
+        }
+        long entries = Long.highestOneBit(megabytes * (1L << 20) / ENTRY_BYTES);
+        if (entries > 1 << 30) {
+            throw new IllegalArgumentException("Transposition table too large: " + megabytes + " MB");
+        }
+        this.keys = new long[(int) entries];
+        this.data = new long[(int) entries];
+        this.bucketMask = (int) entries / BUCKET - 1;
+    }
+
+    public static int move(long entry) {
+        return (int) (entry & (1L << SCORE_SHIFT) - 1);
+    }
+
+    public static int score(long entry) {
+        // Shift up then arithmetic shift down to sign-extend
+        return (int) (entry << 64 - DEPTH_SHIFT >> 64 - SCORE_BITS);
+    }
+
+    public static int depth(long entry) {
+        return (int) (entry >>> DEPTH_SHIFT) & (1 << DEPTH_BITS) - 1;
+    }
+
+    public static int bound(long entry) {
+        return (int) (entry >>> BOUND_SHIFT) & 3;
+    }
+
+    private static int age(long entry) {
+        return (int) (entry >>> AGE_SHIFT);
+    }
+
+    /**
+     * Marks the start of a search, so entries from earlier searches are replaced first. Must be paired with
+     * endSearch().
+     */
+    public synchronized void newSearch() {
+        if (searching++ == 0) {
+            age = (age + 1) % AGES;
+        }
+    }
+
+    /**
+     * Marks the end of a search started with newSearch()
+     */
+    public synchronized void endSearch() {
+        if (searching > 0) {
+            searching--;
+        }
+    }
+
+    /**
+     * Looks a position up
+     *
+     * @param key Position key
+     * @return Packed entry, read with move(), score(), depth() and bound(), or 0 if the position is not stored
+     */
+    public long probe(long key) {
+        int slot = ((int) key & bucketMask) * BUCKET;
+        for (int i = slot; i < slot + BUCKET; i++) {
+            long entry = data[i];
+            if (entry != 0 && (keys[i] ^ entry) == key) {
+                hits.increment();
+                return entry;
+            }
+        }
+        misses.increment();
+        return 0;
+    }
+
+    /**
+     * Stores a search result
+     *
+     * @param key   Position key
+     * @param move  Best encoded move found, 0 for none
+     * @param score Score, must fit in 21 bits signed
+     * @param depth Remaining depth searched, 0 to 127
+     * @param bound EXACT, LOWER or UPPER
+     */
+    public void store(long key, int move, int score, int depth, int bound) {
+        long entry = (move & (1L << SCORE_SHIFT) - 1)
+                | ((long) score & (1L << SCORE_BITS) - 1) << SCORE_SHIFT
+                | (long) depth << DEPTH_SHIFT
+                | (long) bound << BOUND_SHIFT
+                | (long) age << AGE_SHIFT;
+        int slot = ((int) key & bucketMask) * BUCKET;
+        int victim = slot;
+        int victimValue = Integer.MAX_VALUE;
+        for (int i = slot; i < slot + BUCKET; i++) {
+            long old = data[i];
+            if (old == 0 || (keys[i] ^ old) == key) {
+                victim = i;
+                victimValue = Integer.MIN_VALUE;
+                break;
+            }
+            // Each search of age counts for more than the whole depth range
+            int value = depth(old) - (1 << DEPTH_BITS) * ((age - age(old) + AGES) % AGES);
+            if (value < victimValue) {
+                victim = i;
+                victimValue = value;
+            }
+        }
+        if (victimValue != Integer.MIN_VALUE) {
+            collisions.increment();
+        }
+        keys[victim] = key ^ entry;
+        data[victim] = entry;
+    }
+
+    /**
+     * @return Number of entries the table holds
+     */
+    public int capacity() {
+        return data.length;
+    }
+
+    /**
+     * @return Probes that found their position
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return Probes that did not find their position
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return Stores that had to evict a different position
+     */
+    public long getCollisions() {
+        return collisions.sum();
+    }
+}
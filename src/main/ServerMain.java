@@ -1,7 +1,19 @@
 package main;
 
+import database.DBWrapper;
+import database.MoveLog;
+import game.ai.Engine;
+import game.ai.Evaluator;
+import game.ai.OpeningBook;
+import game.ai.Tablebase;
+import game.ai.TranspositionTable;
+import network.BotPlayers;
+import network.RequestExecutor;
 import network.Server;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+
 /**
  *
  *
@@ -16,6 +28,41 @@ public class ServerMain {
             // weeeeell shit
             ex.printStackTrace();
         }
+        // Shared by every computer player, set with -Dcheckers.ai.tableMegabytes=N
+        Engine.sharedTable = new TranspositionTable(Integer.getInteger("checkers.ai.tableMegabytes", 64));
+        // Endgame tablebase directory written by TablebaseGenerator, set with -Dcheckers.ai.tablebase=DIR
+        String tablebase = System.getProperty("checkers.ai.tablebase");
+        // Opening book written by OpeningBookBuilder, set with -Dcheckers.ai.book=FILE
+        String book = System.getProperty("checkers.ai.book");
+        // Evaluation weights as a properties file, set with -Dcheckers.ai.weights=FILE
+        String weights = System.getProperty("checkers.ai.weights");
+        try {
+            if (tablebase != null) {
+                Engine.sharedTablebase = Tablebase.open(Paths.get(tablebase));
+            }
+            if (book != null) {
+                Engine.sharedBook = OpeningBook.open(Paths.get(book));
+            }
+            if (weights != null) {
+                Engine.sharedEvaluator = Evaluator.load(Paths.get(weights));
+            }
+        } catch (IOException e) {
+            // Bots still work without them, just slower
+            e.printStackTrace();
+        }
+        // Finished turns are logged for mining into the book, set with -Dcheckers.moveLog=FILE
+        String moveLog = System.getProperty("checkers.moveLog");
+        if (moveLog != null) {
+            MoveLog.path = Paths.get(moveLog);
+        }
+        // Computer players search on their own pool, set with -Dcheckers.bots.threads=N and -Dcheckers.bots.queue=N
+        BotPlayers.shared = new BotPlayers(Integer.getInteger("checkers.bots.threads",
+                Math.max(1, Runtime.getRuntime().availableProcessors() / 2)),
+                Integer.getInteger("checkers.bots.queue", 64), DBWrapper::getGame, DBWrapper::saveGame);
+        // Requests are processed on a bounded pool and turned away when its queue is full, set with
+        // -Dcheckers.server.workers=N and -Dcheckers.server.queue=N
+        RequestExecutor.shared = new RequestExecutor(Integer.getInteger("checkers.server.workers", 32),
+                Integer.getInteger("checkers.server.queue", 256));
         while (true) {
             try {
                 Server.startServer();
@@ -0,0 +1,234 @@
+package network;
+
+import database.MoveLog;
+import game.Game;
+import game.MoveStatus;
+import game.Player;
+import game.ai.Engine;
+import game.ai.SearchResult;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Computer players that take a player slot under a reserved username, as in new Game(name, user, "computer"). When a
+ * saved game is left on a bot's turn, the bot's move is searched and saved on a small pool of its own, so a slow search
+ * never holds up a request thread.
+ * <p>
+ * The pool has a fixed number of low priority threads and a bounded queue. When the queue is full the move is
+ * rejected rather than queued, and it is tried again the next time the game is requested, so bot load cannot grow
+ * without limit or starve human requests. Queue depth, rejections, waiting time and think time are counted for
+ * monitoring.
+ */
+public class BotPlayers {
+    /**
+     * Bot usernames and their search budget in milliseconds. Nobody can sign up under these names.
+     */
+    public static final Map<String, Long> BUDGETS;
+    /**
+     * Pool used by the server. Set once at server start, null for no bots.
+     */
+    public static BotPlayers shared = null;
+
+    static {
+        Map<String, Long> budgets = new LinkedHashMap<>();
+        budgets.put("computer-easy", 100L);
+        budgets.put("computer", 1000L);
+        budgets.put("computer-hard", 3000L);
+        BUDGETS = Collections.unmodifiableMap(budgets);
+    }
+
+    private final ThreadPoolExecutor pool;
+    private final Function<String, Game> load;
+    private final Consumer<Game> save;
+    // Games with a bot move queued or being searched, so polling clients do not queue the same move twice
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong thinkNanos = new AtomicLong();
+    private final AtomicLong maxThinkNanos = new AtomicLong();
+
+    /**
+     * @param threads Worker threads, the most bot searches that run at once
+     * @param queue   Most bot moves waiting for a worker
+     * @param load    Reads a game by name, null if it no longer exists
+     * @param save    Stores a game after the bot has moved
+     * @throws IllegalArgumentException when threads or queue is not positive.
+     */
+    public BotPlayers(int threads, int queue, Function<String, Game> load, Consumer<Game> save) {
+        if (threads <= 0 || queue <= 0) {
+            throw new IllegalArgumentException("Bot pool needs at least one thread and one queue slot");
+        }
+        this.load = load;
+        this.save = save;
+        this.pool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queue), runnable -> {
+            Thread thread = new Thread(runnable, "bot-player");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    /**
+     * @param name Username
+     * @return True if the name belongs to a bot
+     */
+    public static boolean isBot(String name) {
+        return name != null && BUDGETS.containsKey(name);
+    }
+
+    /**
+     * Bots whose name starts with a prefix, for the user search when creating a game
+     *
+     * @param prefix Start of the name
+     * @return Matching bot names
+     */
+    public static List<String> matching(String prefix) {
+        List<String> names = new ArrayList<>();
+        for (String name : BUDGETS.keySet()) {
+            if (name.startsWith(prefix)) {
+                names.add(name);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Queues the bot's move if it is a bot's turn in the game and none is queued yet. Returns at once.
+     *
+     * @param game Saved game
+     * @return False only if a bot move was due but the queue was full
+     */
+    public boolean schedule(Game game) {
+        if (!isBot(game.turn.getName()) || game.winner() != null || !pending.add(game.name)) {
+            return true;
+        }
+        long queued = System.nanoTime();
+        try {
+            pool.execute(() -> {
+                waitNanos.addAndGet(System.nanoTime() - queued);
+                try {
+                    play(game.name);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                } finally {
+                    pending.remove(game.name);
+                }
+            });
+            submitted.incrementAndGet();
+            return true;
+        } catch (RejectedExecutionException e) {
+            pending.remove(game.name);
+            rejected.incrementAndGet();
+            System.out.println("Bot queue full, will retry " + game.name + " when it is next requested");
+            return false;
+        }
+    }
+
+    /**
+     * Searches and saves the bot's move. The game is read again first, since it may have changed or been deleted
+     * while the move was queued.
+     */
+    private void play(String name) {
+        Game game = load.apply(name);
+        if (game == null || !isBot(game.turn.getName()) || game.winner() != null) {
+            return;
+        }
+        Player bot = game.turn;
+        Engine engine = new Engine(BUDGETS.get(bot.getName()));
+        long start = System.nanoTime();
+        SearchResult result = engine.search(game);
+        long think = System.nanoTime() - start;
+        engine.shutdown();
+        thinkNanos.addAndGet(think);
+        maxThinkNanos.accumulateAndGet(think, Math::max);
+        completed.incrementAndGet();
+        MoveStatus status = result.play(game);
+        if (!status.complete()) {
+            System.out.println("Bot " + bot.getName() + " failed to move in " + name + ": " + status);
+            return;
+        }
+        save.accept(game);
+        MoveLog.append(game.name, game.getLastMove());
+        System.out.println("Bot " + bot.getName() + " moved " + game.getLastMove() + " in " + name + " after "
+                + think / 1000000 + " ms. " + this);
+    }
+
+    /**
+     * @return Bot moves waiting for a worker
+     */
+    public int queueDepth() {
+        return pool.getQueue().size();
+    }
+
+    /**
+     * @return Bot searches running right now
+     */
+    public int active() {
+        return pool.getActiveCount();
+    }
+
+    public long getSubmitted() {
+        return submitted.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    /**
+     * @return Mean time a bot move spent queued before a worker took it, in milliseconds
+     */
+    public double averageWaitMillis() {
+        long started = submitted.get() - queueDepth();
+        return started <= 0 ? 0 : waitNanos.get() / 1e6 / started;
+    }
+
+    /**
+     * @return Mean search time per bot move, in milliseconds
+     */
+    public double averageThinkMillis() {
+        long done = completed.get();
+        return done == 0 ? 0 : thinkNanos.get() / 1e6 / done;
+    }
+
+    /**
+     * @return Longest search time of any bot move, in milliseconds
+     */
+    public double maxThinkMillis() {
+        return maxThinkNanos.get() / 1e6;
+    }
+
+    /**
+     * Stops the workers. Queued moves are dropped and retried when their games are next requested.
+     */
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BotPlayers{queue=%d, active=%d, submitted=%d, rejected=%d, completed=%d, "
+                        + "wait=%.1f ms, think=%.1f ms, maxThink=%.1f ms}", queueDepth(), active(), getSubmitted(),
+                getRejected(), getCompleted(), averageWaitMillis(), averageThinkMillis(), maxThinkMillis());
+    }
+}
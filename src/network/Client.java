@@ -12,6 +12,10 @@ import java.util.function.Consumer;
  */
 public class Client extends Observable {
     public static Client client = new Client();
+    // Keep one connection open for every request, unless -Dcheckers.client.persistent=false asks for one per request
+    private static final boolean PERSISTENT =
+            Boolean.parseBoolean(System.getProperty("checkers.client.persistent", "true"));
+    private final Connection connection = new Connection();
     private String token = "";
     private String username = null; //Keep as null so it returns an error and we know why
 
@@ -25,10 +29,15 @@ public class Client extends Observable {
             case SIGNUP:
                 this.username = ((Login) message).getUsername();
         }
+        if (PERSISTENT) {
+            connection.send(token, message, callback);
+            return;
+        }
         Packet packet = new Packet(token, message);
         String json = packet.toJson();
         if (json == null) {
             callback.accept(Packet.perror("Invalid data"));
+            return;
         }
         sendData(json, callback);
     }
@@ -3,7 +3,6 @@ package network;
 import network.messages.Packet;
 
 import javax.net.ssl.SSLSocket;
-import javax.net.ssl.SSLSocketFactory;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
@@ -14,8 +13,8 @@ import java.util.function.Consumer;
  *
  */
 class ClientThread extends Thread {
-    private static final String SERVER_HOSTNAME = "www.centralark.org";
-    private static final int SERVER_PORT = 4443;
+    static final String SERVER_HOSTNAME = "www.centralark.org";
+    static final int SERVER_PORT = 4443;
     private final String data;
     private final Consumer<Packet> callback;
 
@@ -24,19 +23,24 @@ class ClientThread extends Thread {
         this.callback = callback;
     }
 
+    /**
+     * Opens a TLS connection to the server, resuming an earlier session when it can. See TlsConfig for the settings.
+     *
+     * @return Connected socket
+     * @throws IOException when the server cannot be reached.
+     */
+    static SSLSocket connect() throws IOException {
+        //System.setProperty("javax.net.debug", "ssl");
+        return TlsConfig.get().clientSocket(SERVER_HOSTNAME, SERVER_PORT);
+    }
+
     @Override
     public void run() {
-        //System.setProperty("javax.net.debug", "ssl");
-        System.setProperty("javax.net.ssl.trustStore", "client.jks");
-        System.setProperty("javax.net.ssl.trustStorePassword", "checkers");
         SSLSocket socket = null;
         BufferedReader in = null;
         PrintWriter out = null;
-        SSLSocketFactory sslFact =
-                (SSLSocketFactory) SSLSocketFactory.getDefault();
         try {
-            socket = (SSLSocket) sslFact.createSocket(SERVER_HOSTNAME, SERVER_PORT);
-            socket.setEnabledCipherSuites(new String[]{"TLS_RSA_WITH_AES_128_CBC_SHA"});
+            socket = connect();
             in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
             out = new PrintWriter(socket.getOutputStream(), true);
             out.write(data + "\n");
@@ -0,0 +1,218 @@
+package network;
+
+import network.messages.Message;
+import network.messages.Packet;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * One long-lived connection to the server shared by every request, instead of a new TLS handshake per request. Each
+ * request gets an ID that the server echoes in its response, so several requests can be in flight at once and their
+ * responses matched up in whatever order they arrive.
+ * <p>
+ * Sending only queues the request, since callers are often on the Swing event thread. A writer thread of its own
+ * opens the socket when there is none, which is on the first request and again on the first request after it drops,
+ * and writes the requests in order. When the socket drops, every request written to it and still waiting gets a
+ * "Could not connect" error, as a one-shot request would. Callbacks run one at a time on a thread of their own, so a
+ * slow callback never holds up reading the next response.
+ */
+class Connection {
+    /**
+     * Opens the socket to the server
+     */
+    interface Opener {
+        Socket open() throws IOException;
+    }
+
+    private final Opener opener;
+    private final AtomicLong ids = new AtomicLong();
+    // Callbacks of requests queued or sent and not yet answered, by request ID
+    private final Map<Long, Consumer<Packet>> pending = new ConcurrentHashMap<>();
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "client-connection-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService callbacks = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "client-callbacks");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Open link, null until the first request and after a drop. Only the writer thread opens one.
+    private volatile Link link = null;
+
+    /**
+     * Connection to the checkers server over TLS
+     */
+    Connection() {
+        this(ClientThread::connect);
+    }
+
+    /**
+     * @param opener Opens a socket to the server
+     */
+    Connection(Opener opener) {
+        this.opener = opener;
+    }
+
+    /**
+     * Queues a request and returns at once, without waiting for the socket or the response
+     *
+     * @param token    Session token
+     * @param message  Request
+     * @param callback Called with the response, or with an error if the connection fails first. May be null.
+     */
+    void send(String token, Message message, Consumer<Packet> callback) {
+        long id = ids.incrementAndGet();
+        String json = new Packet(token, message, id).toJson();
+        if (json == null) {
+            deliver(callback, Packet.perror("Invalid data"));
+            return;
+        }
+        pending.put(id, callback == null ? packet -> {
+        } : callback);
+        writer.execute(() -> write(id, json));
+    }
+
+    /**
+     * Writes one request, opening the socket first if there is none. Runs on the writer thread only.
+     */
+    private void write(long id, String json) {
+        Link current = link;
+        if (current == null) {
+            try {
+                current = new Link(opener.open());
+            } catch (IOException e) {
+                fail(id);
+                return;
+            }
+            link = current;
+            current.start();
+        }
+        // Recorded before writing, so a drop while writing still fails it
+        current.written.add(id);
+        current.out.write(json + "\n");
+        current.out.flush();
+        if (current.closed || current.out.checkError()) {
+            drop(current);
+        }
+    }
+
+    /**
+     * @return Requests queued or sent and not yet answered
+     */
+    int pending() {
+        return pending.size();
+    }
+
+    /**
+     * Closes the socket. Requests sent on it and still waiting get an error, and the next request opens a new socket.
+     */
+    void close() {
+        Link current = link;
+        if (current != null) {
+            drop(current);
+        }
+    }
+
+    private void deliver(Consumer<Packet> callback, Packet packet) {
+        if (callback != null) {
+            callbacks.execute(() -> callback.accept(packet));
+        }
+    }
+
+    private void fail(long id) {
+        Consumer<Packet> callback = pending.remove(id);
+        if (callback != null) {
+            deliver(callback, Packet.perror("Could not connect"));
+        }
+    }
+
+    /**
+     * Closes a link and fails whatever was written to it and is still waiting. Safe to call more than once.
+     */
+    private void drop(Link dead) {
+        dead.closed = true;
+        synchronized (this) {
+            if (link == dead) {
+                link = null;
+            }
+        }
+        try {
+            dead.socket.close();
+        } catch (IOException e) {
+            // This is not fatal, but where there's smoke there's fire!
+            e.printStackTrace();
+        }
+        for (Long id : dead.written) {
+            dead.written.remove(id);
+            fail(id);
+        }
+    }
+
+    /**
+     * One open socket, its writer, the requests written to it and the thread reading its responses
+     */
+    private class Link implements Runnable {
+        private final Socket socket;
+        private final PrintWriter out;
+        private final BufferedReader in;
+        private final Set<Long> written = ConcurrentHashMap.newKeySet();
+        private volatile boolean closed = false;
+
+        private Link(Socket socket) throws IOException {
+            this.socket = socket;
+            this.out = new PrintWriter(socket.getOutputStream(), true);
+            this.in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        }
+
+        private void start() {
+            Thread reader = new Thread(this, "client-connection");
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (String input = in.readLine(); input != null; input = in.readLine()) {
+                    if (input.equals("") || input.equals(".")) {
+                        continue;
+                    }
+                    Packet packet = Packet.fromJson(input);
+                    if (packet == null) {
+                        System.out.println("Could not parse response " + input);
+                        continue;
+                    }
+                    written.remove(packet.getId());
+                    Consumer<Packet> callback = pending.remove(packet.getId());
+                    if (callback == null) {
+                        System.out.println("Response to unknown request " + packet.getId());
+                        continue;
+                    }
+                    if (packet.getData() == null) {
+                        deliver(callback, Packet.perror("Could not parse data"));
+                        continue;
+                    }
+                    Client.client.setToken(packet.getToken());
+                    deliver(callback, packet);
+                }
+            } catch (IOException e) {
+                // Dropped, handled below like a clean hang-up
+            } finally {
+                drop(this);
+            }
+        }
+    }
+}
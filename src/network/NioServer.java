@@ -0,0 +1,560 @@
+package network;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking server speaking the same line-delimited JSON as ServerThread, one request per line and one response
+ * line per request. A few I/O threads each run a Selector over many connections and do the TLS through an SSLEngine,
+ * so an idle connection costs a few buffers rather than a thread. Requests are handed to a RequestExecutor, since
+ * they block on the database, and are answered with "Server busy" when its queue is full. The slow parts of a TLS
+ * handshake, the engine's delegated tasks, run on a small pool of their own so they never stall a selector.
+ * <p>
+ * Each connection keeps its own Session for the session state (token and user) and has at most one request
+ * being processed at a time, so its responses go out in the order its requests came in.
+ */
+public class NioServer implements Closeable {
+    // Longest request line accepted. Anything longer is not a checkers request, so the connection is closed.
+    static final int MAX_LINE = 1 << 20;
+    // Requests read ahead on one connection while an earlier one is processed, before reading stops
+    private static final int MAX_PIPELINED = 64;
+    // Consecutive blank lines before the connection is closed, as in ServerThread
+    private static final int MAX_BLANK_LINES = 10;
+    // Connections with no request for this long are closed, as in ServerThread
+    private static final long IDLE_TIMEOUT_MILLIS = 5 * 60 * 1000;
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+    // Handshakes waiting for a TLS worker before more are turned away
+    private static final int MAX_QUEUED_HANDSHAKES = 1024;
+
+    private final ServerSocketChannel listener;
+    private final TlsConfig tls;
+    private final Loop[] loops;
+    private final RequestExecutor requests;
+    // Runs the SSLEngine's delegated tasks, which do the key exchange and certificate work
+    private final ThreadPoolExecutor handshakes;
+    private final AtomicInteger nextLoop = new AtomicInteger();
+    private final AtomicInteger connections = new AtomicInteger();
+    private volatile boolean closed = false;
+
+    /**
+     * Binds the port and starts the I/O threads
+     *
+     * @param address   Address to listen on
+     * @param tls       TLS settings, or null for plain text
+     * @param ioThreads Selector threads
+     * @param requests  Pool processing the requests. Not shut down with the server.
+     * @throws IOException              when the port cannot be bound.
+     * @throws IllegalArgumentException when ioThreads is not positive.
+     */
+    public NioServer(SocketAddress address, TlsConfig tls, int ioThreads, RequestExecutor requests)
+            throws IOException {
+        if (ioThreads <= 0) {
+            throw new IllegalArgumentException("Server needs at least one I/O thread");
+        }
+        this.tls = tls;
+        this.requests = requests;
+        this.handshakes = new ThreadPoolExecutor(ioThreads, ioThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(MAX_QUEUED_HANDSHAKES), runnable -> {
+            Thread thread = new Thread(runnable, "server-tls");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.listener = ServerSocketChannel.open();
+        this.loops = new Loop[ioThreads];
+        try {
+            listener.bind(address, 1024);
+            listener.configureBlocking(false);
+            for (int i = 0; i < ioThreads; i++) {
+                loops[i] = new Loop(i);
+            }
+            // The first loop accepts as well, then spreads the connections over all of them
+            listener.register(loops[0].selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+        for (Loop loop : loops) {
+            loop.thread.start();
+        }
+    }
+
+    /**
+     * @return Port the server is listening on, useful when it was bound to port 0
+     */
+    public int getPort() {
+        return ((InetSocketAddress) listener.socket().getLocalSocketAddress()).getPort();
+    }
+
+    /**
+     * @return Connections open right now
+     */
+    public int connections() {
+        return connections.get();
+    }
+
+    /**
+     * Waits until the server is closed
+     *
+     * @throws InterruptedException when interrupted while waiting.
+     */
+    public void awaitClose() throws InterruptedException {
+        for (Loop loop : loops) {
+            loop.thread.join();
+        }
+    }
+
+    /**
+     * Stops listening and closes every connection. Responses to requests still being processed are dropped.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        handshakes.shutdownNow();
+        try {
+            listener.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        for (Loop loop : loops) {
+            if (loop != null) {
+                loop.selector.wakeup();
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = listener.accept()) != null) {
+            SocketChannel accepted = channel;
+            Loop loop = loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)];
+            loop.execute(() -> loop.register(accepted));
+        }
+    }
+
+    /**
+     * One I/O thread and its Selector. Everything about a connection is touched on its loop's thread only. Other
+     * threads hand work over with execute().
+     */
+    private class Loop implements Runnable {
+        private final Selector selector;
+        private final Thread thread;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+        private Loop(int index) throws IOException {
+            selector = Selector.open();
+            thread = new Thread(this, "server-io-" + index);
+            thread.setDaemon(true);
+        }
+
+        private void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        private void register(SocketChannel channel) {
+            try {
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                Conn conn = new Conn(this, channel);
+                conn.key = channel.register(selector, SelectionKey.OP_READ, conn);
+                connections.incrementAndGet();
+                // A TLS client speaks first, so there is nothing to do until it is readable
+            } catch (IOException | RuntimeException e) {
+                // Only this connection is lost. Escaping would end the loop and every connection on it.
+                e.printStackTrace();
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // Already broken
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            long lastSweep = System.currentTimeMillis();
+            try {
+                while (!closed) {
+                    selector.select(1000);
+                    for (Runnable task = tasks.poll(); task != null; task = tasks.poll()) {
+                        task.run();
+                    }
+                    for (SelectionKey key : selector.selectedKeys()) {
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            try {
+                                accept();
+                            } catch (IOException e) {
+                                // Out of file descriptors, most likely. Keep serving the connections we have.
+                                e.printStackTrace();
+                            }
+                            continue;
+                        }
+                        Conn conn = (Conn) key.attachment();
+                        try {
+                            if (key.isReadable()) {
+                                conn.read();
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                conn.pump();
+                            }
+                        } catch (IOException e) {
+                            // The client went away or broke the protocol
+                            conn.close();
+                        }
+                    }
+                    selector.selectedKeys().clear();
+                    long now = System.currentTimeMillis();
+                    if (now - lastSweep > 1000) {
+                        lastSweep = now;
+                        for (SelectionKey key : selector.keys()) {
+                            if (key.attachment() instanceof Conn && ((Conn) key.attachment()).idleSince
+                                    < now - IDLE_TIMEOUT_MILLIS) {
+                                ((Conn) key.attachment()).close();
+                            }
+                        }
+                    }
+                }
+            } catch (IOException | ClosedSelectorException e) {
+                if (!closed) {
+                    e.printStackTrace();
+                }
+            } finally {
+                for (SelectionKey key : selector.keys()) {
+                    if (key.attachment() instanceof Conn) {
+                        ((Conn) key.attachment()).close();
+                    }
+                }
+                try {
+                    selector.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * One client connection: its buffers, its TLS state, the request lines read but not answered and the response
+     * bytes not yet written
+     */
+    private class Conn {
+        private final Loop loop;
+        private final SocketChannel channel;
+        private final SSLEngine engine;
+        private final Session session = new Session();
+        // Bytes from the network, in fill mode
+        private ByteBuffer netIn;
+        // Encrypted bytes for the network, in fill mode. Unused without TLS.
+        private ByteBuffer netOut;
+        // Decrypted bytes, in fill mode. Unused without TLS, where netIn holds the plain text.
+        private ByteBuffer appIn;
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+        private final Queue<String> lines = new ArrayDeque<>();
+        private final Queue<ByteBuffer> responses = new ArrayDeque<>();
+        private SelectionKey key;
+        private boolean busy = false;
+        // Delegated tasks running on the TLS pool, during which the engine and key are left alone
+        private boolean handshaking = false;
+        private boolean open = true;
+        private int blankLines = 0;
+        private long idleSince = System.currentTimeMillis();
+
+        private Conn(Loop loop, SocketChannel channel) throws IOException {
+            this.loop = loop;
+            this.channel = channel;
+            if (tls == null) {
+                engine = null;
+                netIn = ByteBuffer.allocate(8192);
+            } else {
+                engine = tls.serverEngine();
+                netIn = ByteBuffer.allocate(engine.getSession().getPacketBufferSize());
+                netOut = ByteBuffer.allocate(engine.getSession().getPacketBufferSize());
+                appIn = ByteBuffer.allocate(engine.getSession().getApplicationBufferSize());
+            }
+        }
+
+        private void read() throws IOException {
+            if (channel.read(netIn) < 0) {
+                if (engine != null) {
+                    try {
+                        engine.closeInbound();
+                    } catch (SSLException e) {
+                        // Hung up without close_notify, which clients are allowed to do
+                    }
+                }
+                close();
+                return;
+            }
+            if (engine == null) {
+                netIn.flip();
+                takeLines(netIn);
+                netIn.clear();
+            }
+            pump();
+        }
+
+        /**
+         * Moves data as far as it will go: through the handshake, from netIn to request lines, and from responses to
+         * the network. Then asks the selector for whatever is needed to go further.
+         */
+        private void pump() throws IOException {
+            if (handshaking) {
+                return;
+            }
+            boolean progress = true;
+            while (progress && open && engine != null) {
+                switch (engine.getHandshakeStatus()) {
+                    case NEED_TASK:
+                        runTasks();
+                        return;
+                    case NEED_WRAP:
+                        progress = wrap(EMPTY);
+                        break;
+                    case NEED_UNWRAP:
+                    case NEED_UNWRAP_AGAIN:
+                        progress = unwrap();
+                        break;
+                    default:
+                        progress = unwrap() | wrapResponses();
+                }
+            }
+            if (!open) {
+                return;
+            }
+            // Responses left over with TLS are held up by a full netOut, so flush() tells the whole story
+            boolean pending = engine == null ? !writePlain() : !flush();
+            int ops = lines.size() < MAX_PIPELINED ? SelectionKey.OP_READ : 0;
+            key.interestOps(pending ? ops | SelectionKey.OP_WRITE : ops);
+        }
+
+        /**
+         * Hands the engine's delegated tasks to the TLS pool. The key is disarmed until they are done, then the loop
+         * picks the connection up again where it left off.
+         */
+        private void runTasks() {
+            List<Runnable> tasks = new ArrayList<>();
+            for (Runnable task = engine.getDelegatedTask(); task != null; task = engine.getDelegatedTask()) {
+                tasks.add(task);
+            }
+            handshaking = true;
+            key.interestOps(0);
+            try {
+                handshakes.execute(() -> {
+                    for (Runnable task : tasks) {
+                        task.run();
+                    }
+                    loop.execute(this::resume);
+                });
+            } catch (RejectedExecutionException e) {
+                // Too many handshakes at once, or shutting down
+                close();
+            }
+        }
+
+        private void resume() {
+            handshaking = false;
+            if (!open) {
+                return;
+            }
+            try {
+                pump();
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        private boolean unwrap() throws IOException {
+            netIn.flip();
+            SSLEngineResult result = engine.unwrap(netIn, appIn);
+            netIn.compact();
+            switch (result.getStatus()) {
+                case BUFFER_OVERFLOW:
+                    appIn = grow(appIn, engine.getSession().getApplicationBufferSize());
+                    return true;
+                case BUFFER_UNDERFLOW:
+                    if (netIn.remaining() == 0) {
+                        netIn = grow(netIn, engine.getSession().getPacketBufferSize());
+                    }
+                    return false;
+                case CLOSED:
+                    close();
+                    return false;
+                default:
+                    appIn.flip();
+                    takeLines(appIn);
+                    appIn.clear();
+                    return result.bytesConsumed() > 0 || result.bytesProduced() > 0;
+            }
+        }
+
+        private boolean wrap(ByteBuffer source) throws IOException {
+            SSLEngineResult result = engine.wrap(source, netOut);
+            switch (result.getStatus()) {
+                case BUFFER_OVERFLOW:
+                    // Room is made by writing, so go on only if all of it went out
+                    return flush();
+                case CLOSED:
+                    close();
+                    return false;
+                default:
+                    return result.bytesConsumed() > 0 || result.bytesProduced() > 0;
+            }
+        }
+
+        private boolean wrapResponses() throws IOException {
+            boolean progress = false;
+            while (!responses.isEmpty()) {
+                ByteBuffer response = responses.peek();
+                if (!wrap(response)) {
+                    break;
+                }
+                progress = true;
+                if (!response.hasRemaining()) {
+                    responses.poll();
+                }
+            }
+            return progress;
+        }
+
+        /**
+         * @return True if netOut was written out completely
+         */
+        private boolean flush() throws IOException {
+            netOut.flip();
+            channel.write(netOut);
+            netOut.compact();
+            return netOut.position() == 0;
+        }
+
+        /**
+         * @return True if every response was written out completely
+         */
+        private boolean writePlain() throws IOException {
+            while (!responses.isEmpty()) {
+                ByteBuffer response = responses.peek();
+                channel.write(response);
+                if (response.hasRemaining()) {
+                    return false;
+                }
+                responses.poll();
+            }
+            return true;
+        }
+
+        private ByteBuffer grow(ByteBuffer buffer, int size) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(size, buffer.capacity() * 2));
+            buffer.flip();
+            bigger.put(buffer);
+            return bigger;
+        }
+
+        /**
+         * Splits plain text into request lines and queues them
+         */
+        private void takeLines(ByteBuffer text) throws IOException {
+            while (text.hasRemaining()) {
+                byte b = text.get();
+                if (b != '\n') {
+                    line.write(b);
+                    if (line.size() > MAX_LINE) {
+                        throw new IOException("Request line too long");
+                    }
+                    continue;
+                }
+                String input = new String(line.toByteArray(), StandardCharsets.UTF_8).trim();
+                line.reset();
+                if (input.equals("") || input.equals(".")) {
+                    if (++blankLines >= MAX_BLANK_LINES) {
+                        System.out.println("No data received, disconnecting");
+                        throw new IOException("Too many blank lines");
+                    }
+                    continue;
+                }
+                blankLines = 0;
+                idleSince = System.currentTimeMillis();
+                lines.add(input);
+            }
+            dispatch();
+        }
+
+        /**
+         * Hands the next request to a worker unless one is already being processed
+         */
+        private void dispatch() {
+            if (busy || lines.isEmpty() || !open) {
+                return;
+            }
+            String input = lines.poll();
+            busy = true;
+            requests.execute(input, () -> session.respond(input), output -> loop.execute(() -> answer(output)));
+        }
+
+        private void answer(String output) {
+            busy = false;
+            if (!open) {
+                return;
+            }
+            idleSince = System.currentTimeMillis();
+            responses.add(ByteBuffer.wrap((output + "\n").getBytes(StandardCharsets.UTF_8)));
+            dispatch();
+            try {
+                pump();
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        private void close() {
+            if (!open) {
+                return;
+            }
+            open = false;
+            connections.decrementAndGet();
+            if (engine != null) {
+                // Say goodbye if it fits in one write, but never wait for it
+                engine.closeOutbound();
+                try {
+                    netOut.clear();
+                    engine.wrap(EMPTY, netOut);
+                    flush();
+                } catch (IOException ignored) {
+                    // Closing anyway
+                }
+            }
+            if (key != null) {
+                key.cancel();
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
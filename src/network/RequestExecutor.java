@@ -0,0 +1,208 @@
+package network;
+
+import network.messages.Packet;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Admission control in front of Session.process. Requests run on a fixed pool of workers with a bounded queue,
+ * so however many clients are connected, only so many requests hit the database at once and only so many wait. When
+ * the queue is full a request is turned away at once with "Server busy" rather than queued, which keeps the wait of
+ * the requests that are let in short under overload instead of letting it grow without limit.
+ * <p>
+ * Queue depth, rejections, time spent queued and time to answer are counted for monitoring. Answer times go into
+ * a histogram with power of two buckets, so percentiles are known to within a factor of two.
+ */
+public class RequestExecutor {
+    /**
+     * Pool used by the server. Set once at server start, null to process requests on the connection's own thread.
+     */
+    public static RequestExecutor shared = null;
+    // Bucket i counts answers taking from 2^(i-1) up to 2^i microseconds
+    private static final int BUCKETS = 40;
+
+    private final ThreadPoolExecutor pool;
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLongArray latencies = new AtomicLongArray(BUCKETS);
+
+    /**
+     * @param threads Worker threads, the most requests processed at once
+     * @param queue   Most requests waiting for a worker
+     * @throws IllegalArgumentException when threads or queue is not positive.
+     */
+    public RequestExecutor(int threads, int queue) {
+        if (threads <= 0 || queue <= 0) {
+            throw new IllegalArgumentException("Request pool needs at least one thread and one queue slot");
+        }
+        this.pool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queue), runnable -> {
+            Thread thread = new Thread(runnable, "server-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Answer for a request turned away because the queue is full, with the request's ID so a persistent client can
+     * match it up
+     *
+     * @param input Request line
+     * @return Error packet as JSON
+     */
+    static String busyResponse(String input) {
+        Packet packet = Packet.fromJson(input);
+        Packet busy = Packet.perror("Server busy");
+        return new Packet(busy.getToken(), busy.getData(), packet == null ? 0 : packet.getId()).toJson();
+    }
+
+    /**
+     * Queues a request and returns at once
+     *
+     * @param input   Request line
+     * @param process Works out the response line. Runs on a worker.
+     * @param done    Given the response line, on the worker, or straight away on this thread if the request is
+     *                turned away
+     */
+    public void execute(String input, Supplier<String> process, Consumer<String> done) {
+        long queued = System.nanoTime();
+        // Counted before the handoff, so a worker never completes a request that was not yet counted as submitted
+        submitted.incrementAndGet();
+        try {
+            pool.execute(() -> {
+                long wait = System.nanoTime() - queued;
+                waitNanos.addAndGet(wait);
+                maxWaitNanos.accumulateAndGet(wait, Math::max);
+                String output;
+                try {
+                    output = process.get();
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                    output = Packet.error("Server error, failed to process " + input);
+                }
+                completed.incrementAndGet();
+                latencies.incrementAndGet(bucket(System.nanoTime() - queued));
+                done.accept(output);
+            });
+        } catch (RejectedExecutionException e) {
+            submitted.decrementAndGet();
+            rejected.incrementAndGet();
+            done.accept(busyResponse(input));
+        }
+    }
+
+    /**
+     * Queues a request and waits for its response, for servers with a thread per connection
+     *
+     * @param input   Request line
+     * @param process Works out the response line. Runs on a worker.
+     * @return Response line, or the busy error if the request was turned away
+     * @throws InterruptedException when interrupted while waiting.
+     */
+    public String call(String input, Supplier<String> process) throws InterruptedException {
+        CompletableFuture<String> response = new CompletableFuture<>();
+        execute(input, process, response::complete);
+        try {
+            return response.get();
+        } catch (ExecutionException e) {
+            // Never completed exceptionally
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static int bucket(long nanos) {
+        long micros = Math.max(1, nanos / 1000);
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros - 1));
+    }
+
+    /**
+     * @return Requests waiting for a worker
+     */
+    public int queueDepth() {
+        return pool.getQueue().size();
+    }
+
+    /**
+     * @return Requests being processed right now
+     */
+    public int active() {
+        return pool.getActiveCount();
+    }
+
+    public long getSubmitted() {
+        return submitted.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    /**
+     * @return Mean time a request spent queued before a worker took it, in milliseconds
+     */
+    public double averageWaitMillis() {
+        long done = completed.get();
+        return done == 0 ? 0 : waitNanos.get() / 1e6 / done;
+    }
+
+    /**
+     * @return Longest time any request spent queued, in milliseconds
+     */
+    public double maxWaitMillis() {
+        return maxWaitNanos.get() / 1e6;
+    }
+
+    /**
+     * Time from queueing a request to its answer, below which a share of the answered requests fall. Rounded up to
+     * the top of its histogram bucket.
+     *
+     * @param percentile Between 0 and 100, such as 99
+     * @return Answer time in milliseconds, 0 when nothing has been answered
+     */
+    public double percentileMillis(double percentile) {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += latencies.get(i);
+        }
+        long rank = (long) Math.ceil(total * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += latencies.get(i);
+            if (seen >= rank && seen > 0) {
+                return (1L << i) / 1000.0;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Stops the workers. Queued requests are dropped.
+     */
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RequestExecutor{queue=%d, active=%d, submitted=%d, rejected=%d, completed=%d, "
+                        + "wait=%.1f ms, maxWait=%.1f ms, p50=%.1f ms, p99=%.1f ms}", queueDepth(), active(),
+                getSubmitted(), getRejected(), getCompleted(), averageWaitMillis(), maxWaitMillis(),
+                percentileMillis(50), percentileMillis(99));
+    }
+}
@@ -1,8 +1,11 @@
 package network;
 
-import javax.net.ssl.SSLServerSocketFactory;
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 
 
 /**
@@ -13,21 +16,87 @@ public class Server {
 
     public static void startServer() throws IOException {
         //System.setProperty("javax.net.debug", "ssl");
-        System.setProperty("javax.net.ssl.keyStore", "keystore.jks");
-        System.setProperty("javax.net.ssl.keyStorePassword", "checkers");
-        // SSL Taken from the Oracle Docs
-        ServerSocket listener = null;
-        // Instantiate the ssl socket factory with default setting
-        SSLServerSocketFactory sslSrvFact =
-                (SSLServerSocketFactory) SSLServerSocketFactory.getDefault();
+        // Keystore, protocols, suites and session caching are set with -Dcheckers.tls.*, see TlsConfig
+        // Selector server by default, -Dcheckers.server.mode=threads for the old thread per connection, or
+        // -Dcheckers.server.mode=virtual for a virtual thread per connection
+        String mode = System.getProperty("checkers.server.mode", "nio");
+        if (mode.equals("threads")) {
+            startThreadServer(ServerThread::start);
+        } else if (mode.equals("virtual")) {
+            ExecutorService executor = virtualThreadExecutor();
+            if (executor == null) {
+                System.out.println("Virtual threads need Java 21, using a platform thread per connection");
+                startThreadServer(ServerThread::start);
+            } else {
+                try {
+                    startThreadServer(executor::execute);
+                } finally {
+                    executor.shutdownNow();
+                }
+            }
+        } else {
+            startNioServer();
+        }
+    }
+
+    /**
+     * Executor starting a virtual thread per task. Found by reflection, as the code still builds for Java 17 where
+     * virtual threads do not exist.
+     *
+     * @return Executor, or null when the JVM has no virtual threads
+     */
+    static ExecutorService virtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
 
+    /**
+     * Hands each accepted connection to a handler until the listener is closed
+     *
+     * @param listener Listening socket
+     * @param handler  Runs the connection's ServerThread, on a thread of its own or as a task
+     * @throws IOException when accepting fails, as it does once the listener is closed.
+     */
+    static void serve(ServerSocket listener, Consumer<ServerThread> handler) throws IOException {
+        while (true) {
+            handler.accept(new ServerThread(listener.accept()));
+        }
+    }
 
+    /**
+     * Serves every connection from a few selector threads, set with -Dcheckers.server.ioThreads=N, processing
+     * requests on the shared RequestExecutor.
+     */
+    private static void startNioServer() throws IOException {
+        if (RequestExecutor.shared == null) {
+            RequestExecutor.shared = new RequestExecutor(32, 256);
+        }
+        // A bad keystore or suite list fails here, before binding, rather than on the first connection
+        TlsConfig.get().serverContext();
+        NioServer server = new NioServer(new InetSocketAddress(SERVER_PORT), TlsConfig.get(),
+                Integer.getInteger("checkers.server.ioThreads",
+                        Math.max(1, Runtime.getRuntime().availableProcessors() / 2)),
+                RequestExecutor.shared);
+        System.out.println("Server warmed up and waiting for connections");
         try {
-            listener = sslSrvFact.createServerSocket(SERVER_PORT);
+            server.awaitClose();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            server.close();
+        }
+    }
+
+    private static void startThreadServer(Consumer<ServerThread> handler) throws IOException {
+        // SSL Taken from the Oracle Docs
+        ServerSocket listener = null;
+        try {
+            listener = TlsConfig.get().serverSocket(SERVER_PORT);
             System.out.println("Server warmed up and waiting for connections");
-            while (true) {
-                new ServerThread(listener.accept()).start();
-            }
+            serve(listener, handler);
         } finally {
             if (listener != null) {
                 try {
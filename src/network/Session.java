@@ -0,0 +1,215 @@
+package network;
+
+import database.Credentials;
+import database.DBWrapper;
+import database.MoveLog;
+import database.UserList;
+import game.Game;
+import game.GameList;
+import game.MoveStatus;
+import network.messages.*;
+
+import java.util.UUID;
+
+/**
+ * One client's session on the server: its token and user, and the handling of its requests. Kept apart from the
+ * socket, so ServerThread and NioServer serve requests the same way.
+ */
+class Session {
+    private String token;
+    private String user = null;
+
+    /**
+     * Handles one request line
+     *
+     * @param input Packet as JSON
+     * @return Response packet as JSON, carrying the request's ID
+     */
+    String respond(String input) {
+        Packet packet = Packet.fromJson(input);
+        if (packet == null || packet.getData() == null) {
+            Packet error = Packet.perror("Could not parse " + input);
+            // The ID still matches the error to its request when only the data could not be read
+            return new Packet(error.getToken(), error.getData(), packet == null ? 0 : packet.getId()).toJson();
+        }
+        this.token = packet.getToken();
+        Packet result = process(packet);
+        if (result == null) {
+            result = Packet.perror("Server error, failed to process " + input);
+        }
+        return new Packet(result.getToken(), result.getData(), packet.getId()).toJson();
+    }
+
+    private Packet process(Packet packet) {
+        Message message = packet.getData();
+        switch (packet.getData().type()) {
+            case GAME:
+                Game game = (Game) message;
+                System.out.println("Got a game: " + game.toJson());
+                return new Packet(token, updateGame(game));
+            case SIGNUP:
+                Signup signup = (Signup) message;
+                System.out.println("Signing up: " + signup.getUsername());
+                token = signup(signup);
+                if (token != null && !token.equals("")) {
+                    return new Packet(token, new Ack("Logged in", true));
+                } else {
+                    return Packet.perror("Incorrect username or password");
+                }
+            case LOGIN:
+                Login login = (Login) message;
+                System.out.println("Logging in: " + login.getUsername());
+                token = login(login);
+                if (token != null && !token.equals("")) {
+                    return new Packet(token, new Ack("Logged in", true));
+                } else {
+                    return Packet.perror("Incorrect username or password");
+                }
+            case GAME_LIST_REQUEST:
+                GameListRequest request = (GameListRequest) message;
+                System.out.println("Request for game list from: " + request.user);
+                GameList gameList = getGameList((GameListRequest) message);
+                return new Packet(token, gameList);
+            case GAME_REQUEST:
+                GameRequest grequest = (GameRequest) message;
+                System.out.println("Requested game: " + grequest.name);
+                Game requested = getGame(grequest);
+                if (requested != null) {
+                    // Retries a bot move that was turned away while the bot queue was full
+                    scheduleBot(requested);
+                }
+                return new Packet(token, requested);
+            case GAME_DELETE:
+                GameDelete delete = (GameDelete) message;
+                System.out.println("Deleting game: " + delete.name);
+                Boolean success = deleteGame(delete);
+                return new Packet(token, new Ack("Attempted to delete game", success));
+            case USER_LIST_REQUEST:
+                UserListRequest ulr = (UserListRequest) message;
+                System.out.println("Requested user list starting with: " + ulr.str);
+                UserList userList = getUserList(token, (UserListRequest) message);
+                return new Packet(token, userList);
+            case ACK:
+                return packet;
+            default:
+                System.out.println("Received unexpected message from client: " + message.toJson());
+                return Packet.perror("Unexpected message");
+        }
+    }
+
+    private Boolean deleteGame(GameDelete game) {
+        return DBWrapper.deleteGame(game.name);
+    }
+
+    private UserList getUserList(String token, UserListRequest userListRequest) {
+        UserList users = DBWrapper.getUsers(token, userListRequest.str);
+        // Bots have no Users row, but can be picked as an opponent like anyone else
+        users.getUsers().addAll(BotPlayers.matching(userListRequest.str));
+        return users;
+    }
+
+    private Message updateGame(Game clientGame) {
+        this.user = DBWrapper.getUserByToken(token);
+        Game serverGame = DBWrapper.getGame(clientGame.name);
+        MoveStatus status;
+        if (serverGame == null) {
+            // TODO: Check if this is the initial state and the users make sense, etc.
+            if (ServerThread.validateGameName(clientGame.name)) {
+                DBWrapper.saveGame(clientGame);
+                serverGame = clientGame;
+                // A bot that drew red opens the game
+                scheduleBot(serverGame);
+            } else {
+                return Packet.perror("Invalid game name").getData();
+            }
+        } else if (serverGame.isPublicGame() && clientGame.board.equals(serverGame.board)) {
+            DBWrapper.saveGame(clientGame);
+            return clientGame;
+        } else if (user.equals(serverGame.turn.getName()) && (status = serverGame.move(clientGame)).success()) {
+            DBWrapper.saveGame(serverGame);
+            if (status.complete()) {
+                MoveLog.append(serverGame.name, serverGame.getLastMove());
+                scheduleBot(serverGame);
+            }
+        } else {
+            return Packet.perror("Invalid move").getData();
+        }
+        // Whether the update happened or not, the server version is the source of truth, so send it back down
+        return serverGame;
+    }
+
+    /**
+     * Hands the game to the bot pool if it is now a bot's turn. Returns at once, the bot's move is saved later.
+     */
+    private static void scheduleBot(Game game) {
+        if (BotPlayers.shared != null) {
+            BotPlayers.shared.schedule(game);
+        }
+    }
+
+    // Returns token if successful, else null or ""
+    private String login(Login login) {
+        String u = login.getUsername();
+        String p = login.getPassword();
+        if (!ServerThread.validatePassword(p) || !ServerThread.validateUsername(u)) {
+            //Password or username does not meet requirements, we do not need to hash
+            return "";
+        }
+        Credentials savedUser = DBWrapper.getUser(u);
+
+        // no user exists with this username
+        if (savedUser == null) {
+            System.out.println("Did not find user");
+            return "";
+        }
+        // password verification failed.
+        if (!Utils.verifyHash(p, savedUser.getHash(), savedUser.getSalt())) {
+            System.out.println("Password Auth failed");
+            return "";
+        }
+
+        String token = UUID.randomUUID().toString();
+        savedUser.token = token;
+        savedUser.updateTokenDate();
+        DBWrapper.saveUser(savedUser);
+        return token;
+    }
+
+    // Returns token if successful, else null or ""
+    private String signup(Signup signup) {
+        String username = signup.getUsername();
+        String password = signup.getPassword();
+        if (!ServerThread.validateUsername(username) || !ServerThread.validatePassword(password)) {
+            //Username Password does not meet requirements, we do not need to hash
+            System.out.println("Invalid password");
+            return "";
+        }
+        if (BotPlayers.isBot(username)) {
+            System.out.println("Username is reserved for a bot");
+            return "";
+        }
+        Credentials savedUser = DBWrapper.getUser(username);
+        // user already exists with this username
+        if (savedUser != null) {
+            System.out.println("User already exists");
+            return "";
+        }
+        //Begin updating this credential object with new info
+        String salt = Utils.generateSalt();
+        String hash = Utils.hash(password, salt);
+        // Create the Credentials object
+        savedUser = new Credentials(username, salt, hash);
+        // Save it
+        DBWrapper.saveUser(savedUser);
+        // Proceed to the login flow to generate a token
+        return login(signup);
+    }
+
+    private GameList getGameList(GameListRequest request) {
+        return new GameList(DBWrapper.getPublicGames(request.user), DBWrapper.getPrivateGames(request.user));
+    }
+
+    private Game getGame(GameRequest request) {
+        return DBWrapper.getGame(request.name);
+    }
+}
@@ -0,0 +1,280 @@
+package network;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * TLS settings shared by the server and the client: where the keys are, which protocols and cipher suites to allow,
+ * and how sessions are cached so that reconnecting can skip the full handshake.
+ * <p>
+ * Settings are read from properties under checkers.tls: keyStore, keyStorePassword, trustStore, trustStorePassword,
+ * protocols, cipherSuites (both comma separated), legacyClients, sessionCacheSize, sessionTimeout (seconds),
+ * sessionTickets and resumption. Missing keys keep the defaults, which are the keystores the project has always used,
+ * TLS 1.3 and 1.2 with AES-GCM and forward secrecy only, and session tickets and resumption on. With legacyClients
+ * on, the server also accepts TLS_RSA_WITH_AES_128_CBC_SHA, the one suite that older clients offer, at the lowest
+ * preference. Session tickets are a JVM-wide switch, so they only take effect if set before the JVM first uses TLS.
+ * <p>
+ * Contexts are built on first use and kept, since a kept client context is what remembers sessions to resume.
+ */
+public class TlsConfig {
+    /**
+     * AES-GCM suites with forward secrecy, TLS 1.3 first
+     */
+    public static final String DEFAULT_CIPHER_SUITES = "TLS_AES_128_GCM_SHA256,TLS_AES_256_GCM_SHA384,"
+            + "TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256,TLS_ECDHE_RSA_WITH_AES_256_GCM_SHA384";
+    /**
+     * Only suite offered by clients from before this configuration existed
+     */
+    public static final String LEGACY_CIPHER_SUITE = "TLS_RSA_WITH_AES_128_CBC_SHA";
+    private static final String PREFIX = "checkers.tls.";
+    private static TlsConfig shared = null;
+
+    private final String keyStore;
+    private final char[] keyStorePassword;
+    private final String trustStore;
+    private final char[] trustStorePassword;
+    private final String[] protocols;
+    private final String[] cipherSuites;
+    private final boolean legacyClients;
+    private final int sessionCacheSize;
+    private final int sessionTimeout;
+    private final boolean sessionTickets;
+    private final boolean resumption;
+    private SSLContext serverContext = null;
+    private SSLContext clientContext = null;
+    // Configured suites and protocols narrowed to what this JVM supports, worked out with each context
+    private SSLParameters serverParameters = null;
+    private SSLParameters clientParameters = null;
+
+    /**
+     * @param properties Settings under checkers.tls, such as the system properties
+     * @throws IllegalArgumentException when a number is malformed.
+     */
+    public TlsConfig(Properties properties) {
+        keyStore = properties.getProperty(PREFIX + "keyStore", "keystore.jks");
+        keyStorePassword = properties.getProperty(PREFIX + "keyStorePassword", "checkers").toCharArray();
+        trustStore = properties.getProperty(PREFIX + "trustStore", "client.jks");
+        trustStorePassword = properties.getProperty(PREFIX + "trustStorePassword", "checkers").toCharArray();
+        protocols = properties.getProperty(PREFIX + "protocols", "TLSv1.3,TLSv1.2").split("\\s*,\\s*");
+        cipherSuites = properties.getProperty(PREFIX + "cipherSuites", DEFAULT_CIPHER_SUITES).split("\\s*,\\s*");
+        legacyClients = Boolean.parseBoolean(properties.getProperty(PREFIX + "legacyClients", "true"));
+        sessionTickets = Boolean.parseBoolean(properties.getProperty(PREFIX + "sessionTickets", "true"));
+        resumption = Boolean.parseBoolean(properties.getProperty(PREFIX + "resumption", "true"));
+        try {
+            sessionCacheSize = Integer.parseInt(properties.getProperty(PREFIX + "sessionCacheSize", "10000").trim());
+            sessionTimeout = Integer.parseInt(properties.getProperty(PREFIX + "sessionTimeout", "86400").trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("TLS session cache size and timeout must be whole numbers", e);
+        }
+    }
+
+    /**
+     * @return Settings from the system properties, read once
+     */
+    public static synchronized TlsConfig get() {
+        if (shared == null) {
+            shared = new TlsConfig(System.getProperties());
+        }
+        return shared;
+    }
+
+    /**
+     * Replaces the settings used by the server and client from now on
+     *
+     * @param config Settings
+     */
+    public static synchronized void set(TlsConfig config) {
+        shared = config;
+    }
+
+    /**
+     * @return Context holding the server's key, with its session cache sized
+     * @throws IOException when the keystore cannot be read or TLS cannot be set up.
+     */
+    public synchronized SSLContext serverContext() throws IOException {
+        if (serverContext == null) {
+            setDefault("jdk.tls.server.enableSessionTicketExtension", String.valueOf(sessionTickets));
+            SSLContext context;
+            try {
+                KeyManagerFactory keys = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+                keys.init(load(keyStore, keyStorePassword), keyStorePassword);
+                context = SSLContext.getInstance("TLS");
+                context.init(keys.getKeyManagers(), null, null);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Could not set up TLS with " + keyStore, e);
+            }
+            sizeCache(context.getServerSessionContext());
+            SSLParameters parameters = parameters(context, true);
+            // Kept only once both are built, so a failure here fails every call rather than only the first
+            serverParameters = parameters;
+            serverContext = context;
+        }
+        return serverContext;
+    }
+
+    /**
+     * @return Context trusting the server's certificate. The same one every time while resumption is on, so its
+     * sessions can be resumed, and a new one every time otherwise.
+     * @throws IOException when the truststore cannot be read or TLS cannot be set up.
+     */
+    public synchronized SSLContext clientContext() throws IOException {
+        if (clientContext != null && resumption) {
+            return clientContext;
+        }
+        setDefault("jdk.tls.client.enableSessionTicketExtension", String.valueOf(sessionTickets));
+        SSLContext context;
+        try {
+            TrustManagerFactory trust = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            trust.init(load(trustStore, trustStorePassword));
+            context = SSLContext.getInstance("TLS");
+            context.init(null, trust.getTrustManagers(), null);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Could not set up TLS with " + trustStore, e);
+        }
+        sizeCache(context.getClientSessionContext());
+        // Every TLS context supports the same suites, so the narrowed list is worked out once
+        SSLParameters parameters = clientParameters == null ? parameters(context, false) : clientParameters;
+        clientParameters = parameters;
+        clientContext = context;
+        return clientContext;
+    }
+
+    /**
+     * Sets a JSSE system property unless it was set on the command line, which wins
+     */
+    private static void setDefault(String key, String value) {
+        if (System.getProperty(key) == null) {
+            System.setProperty(key, value);
+        }
+    }
+
+    private void sizeCache(SSLSessionContext sessions) {
+        sessions.setSessionCacheSize(sessionCacheSize);
+        sessions.setSessionTimeout(sessionTimeout);
+    }
+
+    private static KeyStore load(String path, char[] password) throws IOException, GeneralSecurityException {
+        KeyStore store = KeyStore.getInstance(KeyStore.getDefaultType());
+        try (InputStream in = Files.newInputStream(Paths.get(path))) {
+            store.load(in, password);
+        }
+        return store;
+    }
+
+    /**
+     * @return Engine for one server connection, with the configured protocols and suites
+     * @throws IOException when the server context cannot be set up.
+     */
+    public SSLEngine serverEngine() throws IOException {
+        SSLEngine engine = serverContext().createSSLEngine();
+        engine.setUseClientMode(false);
+        engine.setSSLParameters(configure(engine.getSSLParameters(), serverParameters));
+        return engine;
+    }
+
+    /**
+     * @param port Port to listen on
+     * @return Listening socket with the configured protocols and suites
+     * @throws IOException when the port cannot be bound or the server context cannot be set up.
+     */
+    public SSLServerSocket serverSocket(int port) throws IOException {
+        SSLServerSocket socket = (SSLServerSocket) serverContext().getServerSocketFactory().createServerSocket(port);
+        socket.setSSLParameters(configure(socket.getSSLParameters(), serverParameters));
+        return socket;
+    }
+
+    /**
+     * @param host Server name
+     * @param port Server port
+     * @return Connected socket with the configured protocols and suites, resuming an earlier session if it can
+     * @throws IOException when the server cannot be reached or the client context cannot be set up.
+     */
+    public SSLSocket clientSocket(String host, int port) throws IOException {
+        SSLContext context = clientContext();
+        SSLSocket socket = (SSLSocket) context.getSocketFactory().createSocket(host, port);
+        socket.setSSLParameters(configure(socket.getSSLParameters(), clientParameters));
+        // Requests are small and answered at once, so waiting to batch them only adds a delayed ACK to each
+        socket.setTcpNoDelay(true);
+        return socket;
+    }
+
+    private static SSLParameters configure(SSLParameters parameters, SSLParameters configured) {
+        parameters.setCipherSuites(configured.getCipherSuites());
+        parameters.setProtocols(configured.getProtocols());
+        // The server picks from its own list in order, so the strongest suite both sides know wins
+        parameters.setUseCipherSuitesOrder(true);
+        return parameters;
+    }
+
+    /**
+     * Narrows the configured protocols and suites to those a context supports
+     *
+     * @throws IllegalStateException when none of the configured suites or protocols are supported.
+     */
+    private SSLParameters parameters(SSLContext context, boolean server) {
+        SSLParameters supported = context.getSupportedSSLParameters();
+        SSLParameters parameters = new SSLParameters();
+        List<String> suites = new ArrayList<>(Arrays.asList(cipherSuites));
+        if (server && legacyClients) {
+            suites.add(LEGACY_CIPHER_SUITE);
+        }
+        List<String> protocolList = new ArrayList<>(Arrays.asList(protocols));
+        if (server && legacyClients && !protocolList.contains("TLSv1.2")) {
+            protocolList.add("TLSv1.2");
+        }
+        parameters.setCipherSuites(supported(suites, supported.getCipherSuites(), "cipher suites"));
+        parameters.setProtocols(supported(protocolList, supported.getProtocols(), "protocols"));
+        return parameters;
+    }
+
+    private static String[] supported(List<String> wanted, String[] available, String what) {
+        List<String> availableList = Arrays.asList(available);
+        List<String> result = new ArrayList<>();
+        for (String name : wanted) {
+            if (availableList.contains(name)) {
+                result.add(name);
+            } else {
+                System.out.println("Ignoring unsupported TLS " + what + " " + name);
+            }
+        }
+        if (result.isEmpty()) {
+            throw new IllegalStateException("None of the configured TLS " + what + " are supported: " + wanted);
+        }
+        return result.toArray(new String[0]);
+    }
+
+    public boolean isResumption() {
+        return resumption;
+    }
+
+    @Override
+    public String toString() {
+        return "TlsConfig{" +
+                "keyStore='" + keyStore + '\'' +
+                ", trustStore='" + trustStore + '\'' +
+                ", protocols=" + Arrays.toString(protocols) +
+                ", cipherSuites=" + Arrays.toString(cipherSuites) +
+                ", legacyClients=" + legacyClients +
+                ", sessionCacheSize=" + sessionCacheSize +
+                ", sessionTimeout=" + sessionTimeout +
+                ", sessionTickets=" + sessionTickets +
+                ", resumption=" + resumption +
+                '}';
+    }
+}
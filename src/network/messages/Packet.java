@@ -3,6 +3,7 @@ package network.messages;
 import com.google.gson.Gson;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
 import com.google.gson.JsonParser;
 import database.UserList;
 import game.Game;
@@ -35,10 +36,22 @@ public class Packet {
 
     private String token;
     private Message data;
+    // Request ID on a persistent connection, echoed in the response so it can be matched up. 0 for none.
+    private long id;
 
     public Packet(String token, Message data) {
+        this(token, data, 0);
+    }
+
+    /**
+     * @param token Session token
+     * @param data  Message
+     * @param id    Request ID, or 0 for a one-shot connection that needs none
+     */
+    public Packet(String token, Message data, long id) {
         this.token = token;
         this.data = data;
+        this.id = id;
     }
 
     public static Packet perror(String msg) {
@@ -59,8 +72,11 @@ public class Packet {
                 return null;
             }
             Message data = func.apply(root.get("data"));
-            return new Packet(token, data);
-        } catch (IllegalStateException | UnsupportedOperationException e) {
+            // Older clients and servers send no ID
+            long id = root.has("id") ? root.get("id").getAsLong() : 0;
+            return new Packet(token, data, id);
+        } catch (JsonParseException | IllegalStateException | UnsupportedOperationException
+                | NumberFormatException e) {
             return null;
         }
     }
@@ -70,6 +86,9 @@ public class Packet {
         root.addProperty("token", token);
         root.add("data", data.toJson());
         root.addProperty("type", data.getClass().getSimpleName());
+        if (id != 0) {
+            root.addProperty("id", id);
+        }
         return new Gson().toJson(root);
     }
 
@@ -80,4 +99,8 @@ public class Packet {
     public String getToken() {
         return token;
     }
+
+    public long getId() {
+        return id;
+    }
 }
@@ -0,0 +1,46 @@
+package database;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class MoveLogTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @After
+    public void disable() {
+        MoveLog.path = null;
+    }
+
+    @Test
+    public void formatParse() {
+        String line = MoveLog.format("game1", asList(5, 14, 23));
+        assertEquals("game1 5-14-23", line);
+        assertEquals("game1", MoveLog.parseGame(line));
+        assertEquals(asList(5, 14, 23), MoveLog.parseSquares(line));
+        assertNull(MoveLog.parseSquares("game1 5-x"));
+        assertNull(MoveLog.parseGame("nospace"));
+    }
+
+    @Test
+    public void append() throws IOException {
+        MoveLog.append("game1", asList(9, 13));
+        MoveLog.path = folder.getRoot().toPath().resolve("moves.log");
+        MoveLog.append("game1", asList(9, 13));
+        MoveLog.append("game2", asList(22, 17));
+        MoveLog.append("game2", new ArrayList<>());
+        assertEquals(asList("game1 9-13", "game2 22-17"), Files.readAllLines(MoveLog.path));
+    }
+}
@@ -0,0 +1,154 @@
+package game;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static game.Color.RED;
+import static game.Color.WHITE;
+import static game.Disk.*;
+import static game.MoveStatus.*;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class GameSnapshotTest {
+    private static Player redPlayer = new Player("red player", RED);
+    private static Player whitePlayer = new Player("white player", WHITE);
+    private static Game sampleGame = new Game("test", redPlayer, whitePlayer, Game.newBoard(), redPlayer,
+            new ArrayList<>());
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    private static void assertSameState(Game game, GameSnapshot snapshot) {
+        assertEquals(game.board, snapshot.getBoard());
+        assertEquals(game.turn, snapshot.getTurn());
+        assertEquals(game.getLastMove(), snapshot.getLastMove());
+        assertEquals(game.positionKey(), snapshot.positionKey());
+        assertEquals(game.winner(), snapshot.winner());
+        assertEquals(game.count(RED), snapshot.count(RED));
+        assertEquals(game.count(WHITE), snapshot.count(WHITE));
+    }
+
+    @Test
+    public void snapshotIndependentOfGame() {
+        Game game = new Game(sampleGame);
+        GameSnapshot snapshot = game.snapshot();
+        assertEquals(ADJ, game.move(8, 12));
+        assertEquals(RED_DISK, snapshot.getDisk(8));
+        assertEquals(EMPTY, snapshot.getDisk(12));
+        assertEquals(redPlayer, snapshot.getTurn());
+        assertTrue(snapshot.getLastMove().isEmpty());
+    }
+
+    @Test
+    public void moveLeavesOriginal() {
+        GameSnapshot start = sampleGame.snapshot();
+        GameSnapshot next = start.move(8, 12);
+        assertEquals(ADJ, next.getStatus());
+        assertEquals(RED_DISK, next.getDisk(12));
+        assertEquals(whitePlayer, next.getTurn());
+        assertEquals(asList(8, 12), next.getLastMove());
+        assertEquals(sampleGame.snapshot(), start);
+        assertNull(start.getStatus());
+    }
+
+    @Test
+    public void failedMoveKeepsState() {
+        GameSnapshot start = sampleGame.snapshot().move(8, 12);
+        GameSnapshot failed = start.move(12, 16);
+        assertEquals(WRONG_TURN, failed.getStatus());
+        assertEquals(start, failed);
+        assertEquals(asList(8, 12), failed.getLastMove());
+    }
+
+    @Test
+    public void jumpChainExtendsPath() {
+        Game game = new Game(sampleGame);
+        game.board.replaceAll(d -> EMPTY);
+        game.board.set(0, RED_DISK);
+        game.board.set(Game.jumpedSquare(0, 9), WHITE_DISK);
+        game.board.set(Game.jumpedSquare(9, 18), WHITE_DISK);
+        GameSnapshot start = game.snapshot();
+        GameSnapshot first = start.move(0, 9);
+        assertEquals(JMP_INCOMPLETE, first.getStatus());
+        assertEquals(asList(0, 9), first.getLastMove());
+        GameSnapshot second = first.move(9, 18);
+        assertEquals(JMP, second.getStatus());
+        assertEquals(asList(0, 9, 18), second.getLastMove());
+        assertEquals(asList(0, 9), first.getLastMove());
+        assertEquals(redPlayer, second.winner());
+    }
+
+    /**
+     * Plays seeded random games hop by hop on a Game and on snapshots side by side, checking they always agree
+     */
+    @Test
+    public void movesMatchGame() {
+        Random random = new Random(451);
+        int[] buffer = new int[Moves.MAX_MOVES];
+        for (int round = 0; round < 20; round++) {
+            Game game = new Game(sampleGame);
+            GameSnapshot snapshot = game.snapshot();
+            for (int ply = 0; ply < 200 && game.winner() == null; ply++) {
+                int count = snapshot.legalMoves(buffer);
+                assertEquals(count, game.legalMoves(new int[Moves.MAX_MOVES]));
+                List<Integer> path = Moves.path(buffer[random.nextInt(count)]);
+                for (int hop = 1; hop < path.size(); hop++) {
+                    MoveStatus status = game.move(path.get(hop - 1), path.get(hop));
+                    snapshot = snapshot.move(path.get(hop - 1), path.get(hop));
+                    assertEquals(status, snapshot.getStatus());
+                    assertSameState(game, snapshot);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void playMatchesMakeMove() {
+        Random random = new Random(451);
+        int[] buffer = new int[Moves.MAX_MOVES];
+        Game game = new Game(sampleGame);
+        GameSnapshot snapshot = game.snapshot();
+        for (int ply = 0; ply < 100; ply++) {
+            int count = game.legalMoves(buffer);
+            if (count == 0) {
+                break;
+            }
+            int move = buffer[random.nextInt(count)];
+            GameSnapshot before = snapshot;
+            game.makeMove(move);
+            snapshot = snapshot.play(move);
+            assertSameState(game, snapshot);
+            assertNotEquals(before, snapshot);
+        }
+    }
+
+    @Test
+    public void toGameIsIndependent() {
+        GameSnapshot snapshot = sampleGame.snapshot();
+        Game copy = snapshot.toGame();
+        assertEquals(sampleGame, copy);
+        assertEquals(ADJ, copy.move(8, 12));
+        assertEquals(sampleGame.snapshot(), snapshot);
+    }
+
+    @Test
+    public void boardReadOnly() {
+        thrown.expect(UnsupportedOperationException.class);
+        sampleGame.snapshot().getBoard().set(0, EMPTY);
+    }
+
+    @Test
+    public void lastMoveReadOnly() {
+        thrown.expect(UnsupportedOperationException.class);
+        sampleGame.snapshot().move(8, 12).getLastMove().add(16);
+    }
+}
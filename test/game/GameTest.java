@@ -1,11 +1,17 @@
 package game;
 
+import com.google.gson.JsonObject;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
+import java.util.Set;
 
 import static game.Color.RED;
 import static game.Color.WHITE;
@@ -217,6 +223,18 @@ public class GameTest {
         assertEquals(JMP_WRONG_DISK, testGame.move(sampleSrc, sampleJmpDst));
     }
 
+    @Test
+    public void moveOffBoard() {
+        for (Integer src = 0; src < 32; src++) {
+            for (Integer dst : asList(-1, -2, 32, 36)) {
+                assertFalse(Game.legalAdj(src, dst));
+                assertFalse(Game.legalJmp(src, dst));
+            }
+        }
+        assertFalse(Game.legalAdj(-1, 4));
+        assertFalse(Game.legalJmp(32, 23));
+    }
+
     /**
      * Tests all moves across all board coordinates exhaustively and checks that all valid moves fit into the exact set
      * of 170 possible cases.
@@ -440,6 +458,372 @@ public class GameTest {
         }
     }
 
+    /**
+     * Tests that singleMoves produces exactly the moves that move() accepts, over the first turns of a game
+     */
+    @Test
+    public void singleMovesMatchMove() {
+        Game testGame = new Game(sampleGame);
+        int[] buffer = new int[Moves.MAX_MOVES];
+        for (int turn = 0; turn < 20; turn++) {
+            Set<Integer> generated = new HashSet<>();
+            int count = testGame.singleMoves(buffer);
+            for (int i = 0; i < count; i++) {
+                generated.add(Moves.src(buffer[i]) * 32 + Moves.dst(buffer[i]));
+            }
+            Set<Integer> accepted = new HashSet<>();
+            for (Integer src = 0; src < 32; src++) {
+                for (Integer dst = 0; dst < 32; dst++) {
+                    if (new Game(testGame).move(src, dst).success()) {
+                        accepted.add(src * 32 + dst);
+                    }
+                }
+            }
+            assertEquals(accepted, generated);
+            if (count == 0) {
+                break;
+            }
+            // Play the last generated move, finishing any jump chain it starts
+            Integer dst = Moves.dst(buffer[count - 1]);
+            MoveStatus status = testGame.move(Moves.src(buffer[count - 1]), dst);
+            while (status == JMP_INCOMPLETE) {
+                Integer next = testGame.jmpMoves(dst).iterator().next();
+                status = testGame.move(dst, next);
+                dst = next;
+            }
+            assertTrue(status.complete());
+        }
+    }
+
+    /**
+     * Tests that singleMoves allocates nothing once warmed up
+     */
+    @Test
+    public void singleMovesAllocationFree() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        Game testGame = setupBoardJmp(sampleSrc, sampleJmpDst, RED_KING);
+        int[] buffer = new int[Moves.MAX_MOVES];
+        long count = 0;
+        for (int i = 0; i < 100000; i++) {
+            count += testGame.singleMoves(buffer);
+        }
+        // Reading the counter may allocate itself, so measure that overhead and take it off
+        long start = threads.getThreadAllocatedBytes(thread);
+        long overhead = threads.getThreadAllocatedBytes(thread) - start;
+        start = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < 100000; i++) {
+            count += testGame.singleMoves(buffer);
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - start - overhead;
+        assertTrue(count > 0);
+        assertEquals(0, allocated);
+    }
+
+    /**
+     * Replays an encoded move through move() one hop at a time
+     *
+     * @param game Game to play the move on
+     * @param move Encoded move
+     * @return Status of the last hop
+     */
+    private static MoveStatus replay(Game game, int move) {
+        List<Integer> path = Moves.path(move);
+        MoveStatus status = INVALID_MOVE;
+        for (int i = 1; i < path.size(); i++) {
+            status = game.move(path.get(i - 1), path.get(i));
+            if (i < path.size() - 1) {
+                assertEquals(JMP_INCOMPLETE, status);
+            }
+        }
+        return status;
+    }
+
+    @Test
+    public void legalMovesStart() {
+        int[] buffer = new int[Moves.MAX_MOVES];
+        // Only the front row of red can move, 4 disks with one edge disk
+        assertEquals(7, new Game(sampleGame).legalMoves(buffer));
+    }
+
+    /**
+     * Tests that a double jump comes back as one complete move rather than its first hop
+     */
+    @Test
+    public void legalMovesMultiJump() {
+        Game testGame = setupBoardJmp(sampleSrc, sampleJmpDst, RED_DISK);
+        testGame.board.set(13, WHITE_DISK);
+        int[] buffer = new int[Moves.MAX_MOVES];
+        int count = testGame.legalMoves(buffer);
+        List<List<Integer>> paths = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            paths.add(Moves.path(buffer[i]));
+        }
+        assertTrue(paths.contains(asList(0, 9, 16)));
+        assertTrue(paths.contains(asList(0, 4)));
+        assertFalse(paths.contains(asList(0, 9)));
+        assertEquals(JMP, replay(testGame, Moves.fromPath(asList(0, 9, 16))));
+    }
+
+    /**
+     * Tests that a chain already in progress only offers its continuations
+     */
+    @Test
+    public void legalMovesChainInProgress() {
+        Game testGame = setupBoardJmp(sampleSrc, sampleJmpDst, RED_DISK);
+        testGame.board.set(13, WHITE_DISK);
+        testGame.board.set(14, WHITE_DISK);
+        assertEquals(JMP_INCOMPLETE, testGame.move(sampleSrc, sampleJmpDst));
+        int[] buffer = new int[Moves.MAX_MOVES];
+        int count = testGame.legalMoves(buffer);
+        assertEquals(2, count);
+        for (int i = 0; i < count; i++) {
+            assertEquals((int) sampleJmpDst, Moves.src(buffer[i]));
+            assertEquals(JMP, replay(new Game(testGame), buffer[i]));
+        }
+    }
+
+    /**
+     * Plays seeded random games and checks every generated move against move(): each one must replay hop by hop and
+     * end the turn, and together their first hops must be exactly the moves singleMoves offers.
+     */
+    @Test
+    public void legalMovesRandomGames() {
+        Random random = new Random(451);
+        int[] buffer = new int[Moves.MAX_MOVES];
+        int[] singles = new int[Moves.MAX_MOVES];
+        for (int game = 0; game < 50; game++) {
+            Game testGame = new Game(sampleGame);
+            for (int ply = 0; ply < 200; ply++) {
+                int count = testGame.legalMoves(buffer);
+                Set<Integer> firstHops = new HashSet<>();
+                for (int i = 0; i < count; i++) {
+                    assertEquals(testGame.turn.getName(), replayTurn(testGame, buffer[i]));
+                    List<Integer> path = Moves.path(buffer[i]);
+                    firstHops.add(path.get(0) * 32 + path.get(1));
+                }
+                Set<Integer> expected = new HashSet<>();
+                int singleCount = testGame.singleMoves(singles);
+                for (int i = 0; i < singleCount; i++) {
+                    expected.add(Moves.src(singles[i]) * 32 + Moves.dst(singles[i]));
+                }
+                assertEquals(expected, firstHops);
+                if (count == 0) {
+                    break;
+                }
+                assertTrue(replay(testGame, buffer[random.nextInt(count)]).complete());
+            }
+        }
+    }
+
+    /**
+     * Replays a move on a copy of the game and checks it completes the turn
+     *
+     * @param game Game to copy
+     * @param move Encoded move
+     * @return Name of the player who moved
+     */
+    private static String replayTurn(Game game, int move) {
+        Game copy = new Game(game);
+        String mover = copy.turn.getName();
+        assertTrue(replay(copy, move).complete());
+        assertNotEquals(mover, copy.turn.getName());
+        return mover;
+    }
+
+    /**
+     * Works out the winner the slow way: counts disks from the board list and tries every move with move()
+     *
+     * @param game Game to check
+     * @return Winning player, or null
+     */
+    private static Player recomputeWinner(Game game) {
+        for (Player player : asList(game.p1, game.p2)) {
+            boolean canMove = false;
+            for (Integer src = 0; src < 32 && !canMove; src++) {
+                for (Integer dst = 0; dst < 32 && !canMove; dst++) {
+                    Game copy = new Game(game);
+                    copy.turn = player.equals(copy.p1) ? copy.p1 : copy.p2;
+                    copy.lastMove = new ArrayList<>();
+                    canMove = copy.move(src, dst).success();
+                }
+            }
+            if (!canMove) {
+                return player.equals(game.p1) ? game.p2 : game.p1;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks the incrementally kept counts and winner against a full recomputation over seeded random games
+     */
+    @Test
+    public void winnerRandomGames() {
+        Random random = new Random(451);
+        int[] buffer = new int[Moves.MAX_MOVES];
+        for (int game = 0; game < 20; game++) {
+            Game testGame = new Game(sampleGame);
+            for (int ply = 0; ply < 200; ply++) {
+                assertEquals(testGame.board.stream().filter(Disk::red).count(), testGame.count(RED));
+                assertEquals(testGame.board.stream().filter(Disk::white).count(), testGame.count(WHITE));
+                assertEquals(recomputeWinner(testGame), testGame.winner());
+                int count = testGame.legalMoves(buffer);
+                if (count == 0) {
+                    break;
+                }
+                replay(testGame, buffer[random.nextInt(count)]);
+            }
+        }
+    }
+
+    /**
+     * A player whose only disk cannot move has lost, even with disks left
+     */
+    @Test
+    public void winnerBlocked() {
+        Game testGame = setupBoardAdj(3, 7, RED_DISK);
+        testGame.board.set(20, WHITE_DISK);
+        assertNull(testGame.winner());
+        testGame.board.set(7, WHITE_DISK);
+        testGame.board.set(10, WHITE_DISK);
+        assertEquals(whitePlayer, testGame.winner());
+        testGame.board.set(10, EMPTY);
+        assertNull(testGame.winner());
+        testGame.board.set(3, EMPTY);
+        assertEquals(whitePlayer, testGame.winner());
+    }
+
+    /**
+     * Asserts that two games hold the same position, turn and move history
+     *
+     * @param expected Reference game
+     * @param actual   Game being checked
+     */
+    private static void assertSameState(Game expected, Game actual) {
+        assertEquals(expected.board, actual.board);
+        assertEquals(expected.turn.getName(), actual.turn.getName());
+        assertEquals(expected.lastMove, actual.lastMove);
+        assertEquals(expected.count(RED), actual.count(RED));
+        assertEquals(expected.count(WHITE), actual.count(WHITE));
+        assertEquals(expected.winner(), actual.winner());
+    }
+
+    /**
+     * Over seeded random games, every makeMove must match replaying through move() and every unmakeMove must restore
+     * the position exactly
+     */
+    @Test
+    public void makeUnmakeRandomGames() {
+        Random random = new Random(451);
+        int[] buffer = new int[Moves.MAX_MOVES];
+        for (int game = 0; game < 20; game++) {
+            Game testGame = new Game(sampleGame);
+            int made = 0;
+            for (int ply = 0; ply < 200; ply++) {
+                int count = testGame.legalMoves(buffer);
+                if (count == 0) {
+                    break;
+                }
+                Game before = new Game(testGame);
+                for (int i = 0; i < count; i++) {
+                    Game replayed = new Game(testGame);
+                    replay(replayed, buffer[i]);
+                    testGame.makeMove(buffer[i]);
+                    assertSameState(replayed, testGame);
+                    testGame.unmakeMove();
+                    assertSameState(before, testGame);
+                }
+                testGame.makeMove(buffer[random.nextInt(count)]);
+                made++;
+            }
+            for (; made > 0; made--) {
+                testGame.unmakeMove();
+            }
+            assertSameState(sampleGame, testGame);
+        }
+    }
+
+    /**
+     * Finishing a chain started with move() keeps the earlier squares in lastMove
+     */
+    @Test
+    public void makeMoveChainInProgress() {
+        Game testGame = setupBoardJmp(sampleSrc, sampleJmpDst, RED_DISK);
+        testGame.board.set(13, WHITE_DISK);
+        assertEquals(JMP_INCOMPLETE, testGame.move(sampleSrc, sampleJmpDst));
+        Game before = new Game(testGame);
+        testGame.makeMove(Moves.fromPath(asList(9, 16)));
+        assertEquals(asList(0, 9, 16), testGame.lastMove);
+        assertEquals(whitePlayer.getName(), testGame.turn.getName());
+        testGame.unmakeMove();
+        assertSameState(before, testGame);
+    }
+
+    @Test
+    public void unmakeMoveEmpty() {
+        thrown.expect(IllegalStateException.class);
+        new Game(sampleGame).unmakeMove();
+    }
+
+    /**
+     * Rebuilds a game from its board list, so its key is computed from scratch rather than incrementally
+     *
+     * @param game Game to rebuild
+     * @return Key of the rebuilt game
+     */
+    private static long recomputeKey(Game game) {
+        Game copy = new Game(game.name, game.p1, game.p2, new ArrayList<>(game.board), game.turn,
+                new ArrayList<>(game.lastMove));
+        return copy.positionKey();
+    }
+
+    /**
+     * The incremental key must always match one computed from scratch, through move(), makeMove and unmakeMove
+     */
+    @Test
+    public void positionKeyRandomGames() {
+        Random random = new Random(451);
+        int[] buffer = new int[Moves.MAX_MOVES];
+        for (int game = 0; game < 20; game++) {
+            Game testGame = new Game(sampleGame);
+            for (int ply = 0; ply < 200; ply++) {
+                assertEquals(recomputeKey(testGame), testGame.positionKey());
+                int count = testGame.legalMoves(buffer);
+                if (count == 0) {
+                    break;
+                }
+                long before = testGame.positionKey();
+                int move = buffer[random.nextInt(count)];
+                testGame.makeMove(move);
+                assertEquals(recomputeKey(testGame), testGame.positionKey());
+                testGame.unmakeMove();
+                assertEquals(before, testGame.positionKey());
+                replay(testGame, move);
+            }
+        }
+    }
+
+    /**
+     * The same position reached by two move orders shares a key, and the side to move is part of it
+     */
+    @Test
+    public void positionKeyTransposition() {
+        Game first = new Game(sampleGame);
+        Game second = new Game(sampleGame);
+        assertEquals(ADJ, first.move(8, 12));
+        assertEquals(ADJ, first.move(20, 16));
+        assertEquals(ADJ, first.move(9, 13));
+        assertNotEquals(first.positionKey(), second.positionKey());
+        assertEquals(ADJ, second.move(9, 13));
+        assertEquals(ADJ, second.move(20, 16));
+        assertEquals(ADJ, second.move(8, 12));
+        assertEquals(first.positionKey(), second.positionKey());
+        second.turn = redPlayer;
+        assertNotEquals(first.positionKey(), second.positionKey());
+    }
+
     @Test
     public void constructInvalidPlayers() {
         thrown.expect(IllegalArgumentException.class);
@@ -474,6 +858,58 @@ public class GameTest {
         new Game(sampleName, redPlayer, whitePlayer, testBoard, redPlayer, new ArrayList<>());
     }
 
+    @Test
+    public void encodeBoardRoundTrip() {
+        Random random = new Random(451);
+        int[] buffer = new int[Moves.MAX_MOVES];
+        for (int game = 0; game < 20; game++) {
+            Game testGame = new Game(sampleGame);
+            for (int ply = 0; ply < 100; ply++) {
+                String encoded = testGame.encodeBoard();
+                assertEquals(16, encoded.length());
+                assertEquals(testGame.board, Game.deserializeBoard(encoded));
+                int count = testGame.legalMoves(buffer);
+                if (count == 0) {
+                    break;
+                }
+                testGame.makeMove(buffer[random.nextInt(count)]);
+            }
+        }
+    }
+
+    @Test
+    public void deserializeLegacyBoard() {
+        assertEquals(sampleBoard, Game.deserializeBoard(sampleGame.serializeBoard()));
+    }
+
+    @Test
+    public void deserializeBoardWrongLength() {
+        thrown.expect(IllegalArgumentException.class);
+        Game.deserializeBoard("AAAA");
+    }
+
+    @Test
+    public void deserializeBoardOverlapping() {
+        // Square 0 is both red and white
+        thrown.expect(IllegalArgumentException.class);
+        Game.deserializeBoard(Base64.getEncoder().encodeToString(new byte[]{0, 0, 0, 1, 0, 0, 0, 1, 0, 0, 0, 0}));
+    }
+
+    @Test
+    public void jsonRoundTrip() {
+        Game testGame = new Game(sampleGame);
+        assertEquals(ADJ, testGame.move(8, 12));
+        Game copy = Game.fromJson(testGame.toJson());
+        assertNotNull(copy);
+        assertEquals(testGame.board, copy.board);
+        assertEquals(testGame.getLastMove(), copy.getLastMove());
+        assertEquals(testGame.turn, copy.turn);
+        // Games sent with the legacy CSV board still parse
+        JsonObject legacy = testGame.toJson().getAsJsonObject();
+        legacy.addProperty("board", testGame.serializeBoard());
+        assertEquals(testGame.board, Game.fromJson(legacy).board);
+    }
+
     @Test
     public void equalsTest() {
         Game first = new Game("blah", "blargh");
@@ -0,0 +1,63 @@
+package game;
+
+import org.junit.Test;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class MovesTest {
+    @Test
+    public void step() {
+        int move = Moves.fromPath(asList(5, 9));
+        assertEquals(5, Moves.src(move));
+        assertEquals(9, Moves.dst(move));
+        assertEquals(0, Moves.jumps(move));
+        assertFalse(Moves.isJump(move));
+        assertEquals(asList(5, 9), Moves.path(move));
+    }
+
+    @Test
+    public void jumpChain() {
+        int move = Moves.fromPath(asList(0, 9, 18, 25));
+        assertEquals(0, Moves.src(move));
+        assertEquals(25, Moves.dst(move));
+        assertEquals(3, Moves.jumps(move));
+        assertTrue(Moves.isJump(move));
+        assertEquals(asList(0, 9, 18, 25), Moves.path(move));
+    }
+
+    @Test
+    public void extend() {
+        int move = Moves.jump(0, 3);
+        assertEquals(asList(0, 9), Moves.path(move));
+        assertEquals(asList(0, 9, 18), Moves.path(Moves.extend(move, 3)));
+    }
+
+    @Test
+    public void invalidPath() {
+        assertEquals(-1, Moves.fromPath(asList(0)));
+        assertEquals(-1, Moves.fromPath(asList(0, 1)));
+        assertEquals(-1, Moves.fromPath(asList(0, 9, 10)));
+        assertEquals(-1, Moves.fromPath(asList(-1, 4)));
+        assertEquals(-1, Moves.fromPath(asList(0, -1)));
+        assertEquals(-1, Moves.fromPath(asList(0, 9, -1)));
+        assertEquals(-1, Moves.fromPath(asList(0, 32)));
+    }
+
+    /**
+     * Every step and jump on the board must survive an encode/decode round trip
+     */
+    @Test
+    public void roundTrip() {
+        for (Integer src = 0; src < Game.boardSize; src++) {
+            for (Integer dst = 0; dst < Game.boardSize; dst++) {
+                if (Game.legalAdj(src, dst) || Game.legalJmp(src, dst)) {
+                    assertEquals(asList(src, dst), Moves.path(Moves.fromPath(asList(src, dst))));
+                }
+            }
+        }
+    }
+}
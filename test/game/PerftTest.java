@@ -0,0 +1,114 @@
+package game;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static game.MoveStatus.JMP_INCOMPLETE;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class PerftTest {
+    // Leaves at depth 1 to 6 for each Perft.REFERENCE position. A change here is a change to the rules.
+    private static final long[][] EXPECTED = {
+            {7, 49, 379, 2872, 23582, 189143},
+            {7, 61, 497, 4558, 38998, 365301},
+            {6, 55, 383, 3454, 24926, 227991},
+            {6, 60, 172, 1574, 4792, 43004},
+    };
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    /**
+     * Counts leaves the slow way, playing every turn through move(src, dst) on copies of the game
+     */
+    private static long slowPerft(Game game, int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+        List<Game> turns = new ArrayList<>();
+        for (int src = 0; src < Game.boardSize; src++) {
+            if (game.getDisk(src).getColor() == game.turn.getColor()) {
+                turns(game, src, false, turns);
+            }
+        }
+        long leaves = 0;
+        for (Game next : turns) {
+            leaves += slowPerft(next, depth - 1);
+        }
+        return leaves;
+    }
+
+    /**
+     * Collects the positions after every complete turn starting with the disk on src
+     *
+     * @param chain True if src is in the middle of a jump chain, so only jumps may follow
+     */
+    private static void turns(Game game, int src, boolean chain, List<Game> turns) {
+        for (int dst = 0; dst < Game.boardSize; dst++) {
+            if (!Game.legalJmp(src, dst) && (chain || !Game.legalAdj(src, dst))) {
+                continue;
+            }
+            Game next = new Game(game);
+            MoveStatus status = next.move(src, dst);
+            if (status.complete()) {
+                turns.add(next);
+            } else if (status == JMP_INCOMPLETE) {
+                turns(next, dst, true, turns);
+            }
+        }
+    }
+
+    @Test
+    public void referenceCounts() {
+        for (int position = 0; position < Perft.REFERENCE.length; position++) {
+            Game game = Perft.position(Perft.REFERENCE[position]);
+            for (int depth = 1; depth <= EXPECTED[position].length; depth++) {
+                assertEquals(Perft.REFERENCE[position] + " depth " + depth, EXPECTED[position][depth - 1],
+                        Perft.perft(game, depth));
+            }
+            assertEquals(1, Perft.perft(game, 0));
+        }
+    }
+
+    @Test
+    public void matchesMove() {
+        for (String position : Perft.REFERENCE) {
+            Game game = Perft.position(position);
+            assertEquals(position, slowPerft(game, 3), Perft.perft(game, 3));
+        }
+    }
+
+    @Test
+    public void parallelMatches() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        for (int position = 0; position < Perft.REFERENCE.length; position++) {
+            Game game = Perft.position(Perft.REFERENCE[position]);
+            assertEquals(EXPECTED[position][5], Perft.parallel(game, 6, pool));
+            assertEquals(EXPECTED[position][1], Perft.parallel(game, 2, pool));
+        }
+        pool.shutdown();
+    }
+
+    @Test
+    public void positionUnchanged() {
+        Game game = Perft.position(Perft.REFERENCE[3]);
+        Game before = new Game(game);
+        Perft.perft(game, 4);
+        assertEquals(before.board, game.board);
+        assertEquals(before.positionKey(), game.positionKey());
+    }
+
+    @Test
+    public void malformedPosition() {
+        thrown.expect(IllegalArgumentException.class);
+        Perft.position("rrrr r");
+    }
+}
@@ -0,0 +1,107 @@
+package game.ai;
+
+import game.Disk;
+import game.Game;
+import game.Player;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static game.Color.RED;
+import static game.Color.WHITE;
+import static game.Disk.*;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class EngineTest {
+    static Player redPlayer = new Player("red player", RED);
+    static Player whitePlayer = new Player("white player", WHITE);
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    /**
+     * Builds a game with only the given disks on the board
+     *
+     * @param turn    Player to move
+     * @param squares Alternating square coordinates and disks
+     * @return Game in that position
+     */
+    static Game position(Player turn, Object... squares) {
+        List<Disk> board = Game.newBoard();
+        board.replaceAll(d -> EMPTY);
+        for (int i = 0; i < squares.length; i += 2) {
+            board.set((Integer) squares[i], (Disk) squares[i + 1]);
+        }
+        return new Game("test", redPlayer, whitePlayer, board, turn, new ArrayList<>());
+    }
+
+    @Test
+    public void searchWithinBudget() {
+        Game start = new Game("test", redPlayer, whitePlayer, Game.newBoard(), redPlayer, new ArrayList<>());
+        SearchResult result = new Engine(200).search(start);
+        // The opening is far too deep to search out, so stopping short of the depth limit means the budget stopped it
+        assertTrue(result.getDepth() < Engine.MAX_PLY / 2);
+        assertTrue(result.getDepth() >= 1);
+        assertTrue(result.getNodes() > 0);
+        assertTrue(result.nodesPerSecond() > 0);
+        assertTrue(result.play(start).complete());
+    }
+
+    @Test
+    public void searchTakesWinningJump() {
+        Game game = position(redPlayer, 5, RED_DISK, 9, WHITE_DISK, 1, RED_DISK);
+        SearchResult result = new Engine(1000).search(game);
+        assertEquals(asList(5, 14), result.getPath());
+        assertTrue(result.getScore() > Engine.WIN - Engine.MAX_PLY);
+        assertTrue(result.play(game).complete());
+        assertEquals(redPlayer, game.winner());
+    }
+
+    @Test
+    public void searchAvoidsLosingStep() {
+        // Stepping 13 -> 16 or 13 -> 17 gives the disk away to the white disk on 21, moving the disk on 0 is safe
+        Game game = position(redPlayer, 13, RED_DISK, 0, RED_DISK, 21, WHITE_DISK, 30, WHITE_DISK);
+        SearchResult result = new Engine(1000, 6).search(game);
+        assertEquals(0, (int) result.getPath().get(0));
+    }
+
+    @Test
+    public void searchNoMoves() {
+        Game game = position(whitePlayer, 5, RED_DISK);
+        SearchResult result = new Engine(100).search(game);
+        assertEquals(-1, result.getMove());
+        assertTrue(result.getPath().isEmpty());
+    }
+
+    @Test
+    public void parallelSearch() {
+        Game game = position(redPlayer, 5, RED_DISK, 9, WHITE_DISK, 1, RED_DISK, 30, WHITE_DISK);
+        Engine engine = new Engine(300, 20, new TranspositionTable(4), 4);
+        SearchResult result = engine.search(game);
+        engine.shutdown();
+        assertEquals(asList(5, 14), result.getPath());
+        // The win is proven within a few plies, and every thread stops there rather than searching on to depth 20
+        assertTrue(result.getDepth() < 20);
+        assertTrue(result.getNodes() > 0);
+        assertTrue(result.play(game).complete());
+    }
+
+    @Test
+    public void invalidThreads() {
+        thrown.expect(IllegalArgumentException.class);
+        new Engine(100, 4, null, 0);
+    }
+
+    @Test
+    public void invalidBudget() {
+        thrown.expect(IllegalArgumentException.class);
+        new Engine(0);
+    }
+}
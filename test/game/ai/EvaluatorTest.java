@@ -0,0 +1,129 @@
+package game.ai;
+
+import game.Game;
+import game.Moves;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static game.ai.EngineTest.position;
+import static game.ai.EngineTest.redPlayer;
+import static game.ai.EngineTest.whitePlayer;
+import static game.Color.RED;
+import static game.Color.WHITE;
+import static game.Disk.*;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class EvaluatorTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    private static Game start() {
+        return new Game("test", redPlayer, whitePlayer, Game.newBoard(), redPlayer, new ArrayList<>());
+    }
+
+    @Test
+    public void startIsEven() {
+        Game game = start();
+        assertEquals(7, game.moveCount(RED));
+        assertEquals(7, game.moveCount(WHITE));
+        assertEquals(0, Evaluator.DEFAULT.evaluate(game));
+    }
+
+    @Test
+    public void terms() {
+        Evaluator material = new Evaluator(100, 150, 0, 0, 0);
+        assertEquals(100, material.evaluate(position(redPlayer, 0, RED_DISK, 5, RED_DISK, 31, WHITE_DISK)));
+        assertEquals(-100, material.evaluate(position(whitePlayer, 0, RED_DISK, 5, RED_DISK, 31, WHITE_DISK)));
+        assertEquals(50, material.evaluate(position(redPlayer, 5, RED_KING, 26, WHITE_DISK)));
+        // A red man on its back row against a white man off its own
+        Evaluator backRank = new Evaluator(0, 0, 10, 0, 0);
+        assertEquals(10, backRank.evaluate(position(redPlayer, 1, RED_DISK, 24, WHITE_DISK)));
+        assertEquals(0, backRank.evaluate(position(redPlayer, 1, RED_KING, 24, WHITE_DISK)));
+        Evaluator centre = new Evaluator(0, 0, 0, 5, 0);
+        assertEquals(-5, centre.evaluate(position(redPlayer, 4, RED_DISK, 14, WHITE_DISK)));
+        // The man in the corner has one step, the king in the middle four
+        Evaluator mobility = new Evaluator(0, 0, 0, 0, 1);
+        assertEquals(-3, mobility.evaluate(position(redPlayer, 3, RED_DISK, 14, WHITE_KING)));
+    }
+
+    /**
+     * Plays seeded random games through both move() and makeMove/unmakeMove on an attached game, checking the running
+     * square score always matches one worked out from scratch
+     */
+    @Test
+    public void incrementalMatchesFull() {
+        Evaluator evaluator = Evaluator.DEFAULT;
+        Random random = new Random(451);
+        int[] buffer = new int[Moves.MAX_MOVES];
+        for (int round = 0; round < 20; round++) {
+            Game game = start();
+            evaluator.attach(game);
+            for (int ply = 0; ply < 200 && game.winner() == null; ply++) {
+                int count = game.legalMoves(buffer);
+                int move = buffer[random.nextInt(count)];
+                game.makeMove(move);
+                assertEquals(evaluator.squareScore(game), game.getSquareScore());
+                game.unmakeMove();
+                assertEquals(evaluator.squareScore(game), game.getSquareScore());
+                List<Integer> path = Moves.path(move);
+                for (int hop = 1; hop < path.size(); hop++) {
+                    game.move(path.get(hop - 1), path.get(hop));
+                    assertEquals(evaluator.squareScore(game), game.getSquareScore());
+                }
+                Game copy = new Game(game);
+                assertEquals(evaluator.evaluate(game), evaluator.evaluate(copy));
+                copy.setSquareScores(null);
+                assertEquals(evaluator.evaluate(game), evaluator.evaluate(copy));
+            }
+        }
+    }
+
+    @Test
+    public void loadWeights() throws IOException {
+        Path file = folder.newFile("weights.properties").toPath();
+        Files.write(file, asList("# Material only", "man = 100", "king=300", "centre=0", "backRank=0", "mobility=0"),
+                StandardCharsets.UTF_8);
+        Evaluator evaluator = Evaluator.load(file);
+        assertEquals(200, evaluator.evaluate(position(redPlayer, 5, RED_KING, 26, WHITE_DISK)));
+        // Missing keys keep their default
+        Files.write(file, asList("mobility=0"), StandardCharsets.UTF_8);
+        assertEquals(50, Evaluator.load(file).evaluate(position(redPlayer, 5, RED_KING, 26, WHITE_DISK)));
+    }
+
+    @Test
+    public void loadMalformedWeights() throws IOException {
+        Path file = folder.newFile("weights.properties").toPath();
+        Files.write(file, asList("man=heavy"), StandardCharsets.UTF_8);
+        thrown.expect(IllegalArgumentException.class);
+        Evaluator.load(file);
+    }
+
+    @Test
+    public void engineUsesEvaluator() {
+        // Red can crown the man on 24, which is only worth something when kings are
+        Game game = position(redPlayer, 24, RED_DISK, 1, RED_DISK, 14, WHITE_DISK);
+        Engine engine = new Engine(Long.MAX_VALUE, 1, null);
+        engine.setEvaluator(new Evaluator(100, 100, 0, 0, 0));
+        assertEquals(100, engine.search(game).getScore());
+        engine.setEvaluator(new Evaluator(100, 200, 0, 0, 0));
+        SearchResult result = engine.search(game);
+        assertEquals(200, result.getScore());
+        assertEquals(24, (int) result.getPath().get(0));
+    }
+}
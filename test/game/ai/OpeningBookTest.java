@@ -0,0 +1,156 @@
+package game.ai;
+
+import game.Game;
+import game.Moves;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static game.ai.EngineTest.redPlayer;
+import static game.ai.EngineTest.whitePlayer;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class OpeningBookTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    private static Game start() {
+        return new Game("test", redPlayer, whitePlayer, Game.newBoard(), redPlayer, new ArrayList<>());
+    }
+
+    /**
+     * Plays random legal moves from the start
+     *
+     * @return Path of every turn
+     */
+    private static List<List<Integer>> randomGame(Random random, int plies) {
+        Game game = start();
+        int[] moves = new int[Moves.MAX_MOVES];
+        List<List<Integer>> turns = new ArrayList<>();
+        for (int ply = 0; ply < plies; ply++) {
+            int count = game.legalMoves(moves);
+            if (count == 0) {
+                break;
+            }
+            int move = moves[random.nextInt(count)];
+            turns.add(Moves.path(move));
+            game.makeMove(move);
+        }
+        return turns;
+    }
+
+    private Path build(OpeningBookBuilder builder) throws IOException {
+        Path file = folder.getRoot().toPath().resolve("test.book");
+        builder.write(file);
+        return file;
+    }
+
+    @Test
+    public void startWeights() throws IOException {
+        OpeningBookBuilder builder = new OpeningBookBuilder(4);
+        Random random = new Random(451);
+        for (int i = 0; i < 50; i++) {
+            builder.addGame(randomGame(random, 30));
+        }
+        OpeningBook book = OpeningBook.open(build(builder));
+        assertEquals(builder.size(), book.size());
+        int[] moves = new int[Moves.MAX_MOVES];
+        int[] weights = new int[Moves.MAX_MOVES];
+        int count = book.lookup(start().positionKey(), moves, weights);
+        assertTrue(count > 1);
+        int total = 0;
+        for (int i = 0; i < count; i++) {
+            total += weights[i];
+            if (i > 0) {
+                assertTrue(weights[i] <= weights[i - 1]);
+            }
+        }
+        assertEquals(50, total);
+        // Deeper than the book's four plies is not stored
+        Game deep = start();
+        for (List<Integer> turn : randomGame(new Random(451), 5)) {
+            deep.makeMove(Moves.fromPath(turn));
+        }
+        assertEquals(0, book.lookup(deep.positionKey(), moves, weights));
+    }
+
+    @Test
+    public void chooseBookMove() throws IOException {
+        OpeningBookBuilder builder = new OpeningBookBuilder(2);
+        builder.addGame(asList(asList(9, 13), asList(22, 17)));
+        builder.addGame(asList(asList(9, 13), asList(21, 17)));
+        OpeningBook book = OpeningBook.open(build(builder));
+        int[] moves = new int[Moves.MAX_MOVES];
+        int[] weights = new int[Moves.MAX_MOVES];
+        Game game = start();
+        assertEquals(Moves.fromPath(asList(9, 13)), book.choose(game, new Random(), moves, weights));
+        game.makeMove(Moves.fromPath(asList(9, 13)));
+        int reply = book.choose(game, new Random(), moves, weights);
+        assertTrue(asList(asList(22, 17), asList(21, 17)).contains(Moves.path(reply)));
+        game.makeMove(reply);
+        assertEquals(0, book.choose(game, new Random(), moves, weights));
+    }
+
+    @Test
+    public void engineUsesBook() throws IOException {
+        OpeningBookBuilder builder = new OpeningBookBuilder(1);
+        builder.addGame(asList(asList(10, 14)));
+        Engine engine = new Engine(1000, 20, null);
+        engine.setBook(OpeningBook.open(build(builder)));
+        SearchResult result = engine.search(start());
+        assertEquals(asList(10, 14), result.getPath());
+        assertEquals(0, result.getNodes());
+    }
+
+    @Test
+    public void addLog() throws IOException {
+        // Two games interleaved, one started before the log and a reused name
+        Path log = folder.newFile("moves.log").toPath();
+        Files.write(log, asList(
+                "a 9-13", "b 10-14", "old 17-13", "a 22-17", "b 21-17", "a 13-22", "broken",
+                "a 9-13"));
+        OpeningBookBuilder builder = new OpeningBookBuilder(3);
+        builder.addLog(log);
+        OpeningBook book = OpeningBook.open(build(builder));
+        int[] moves = new int[Moves.MAX_MOVES];
+        int[] weights = new int[Moves.MAX_MOVES];
+        Game game = start();
+        assertEquals(2, book.lookup(game.positionKey(), moves, weights));
+        // 9-13 twice, once more for the reused name
+        assertEquals(Moves.fromPath(asList(9, 13)), moves[0]);
+        assertEquals(2, weights[0]);
+        assertEquals(1, weights[1]);
+        game.makeMove(Moves.fromPath(asList(9, 13)));
+        game.makeMove(Moves.fromPath(asList(22, 17)));
+        assertEquals(1, book.lookup(game.positionKey(), moves, weights));
+        assertEquals(asList(13, 22), Moves.path(moves[0]));
+    }
+
+    @Test
+    public void openRejectsForeignFile() throws IOException {
+        Path file = folder.newFile("foreign.book").toPath();
+        Files.write(file, new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        thrown.expect(IOException.class);
+        OpeningBook.open(file);
+    }
+
+    @Test
+    public void invalidPlies() {
+        thrown.expect(IllegalArgumentException.class);
+        new OpeningBookBuilder(0);
+    }
+}
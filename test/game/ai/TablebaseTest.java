@@ -0,0 +1,154 @@
+package game.ai;
+
+import game.Disk;
+import game.Game;
+import game.Moves;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Random;
+
+import static game.ai.EngineTest.position;
+import static game.ai.EngineTest.redPlayer;
+import static game.ai.EngineTest.whitePlayer;
+import static game.Color.RED;
+import static game.Color.WHITE;
+import static game.Disk.*;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class TablebaseTest {
+    @ClassRule
+    public static TemporaryFolder folder = new TemporaryFolder();
+    private static Tablebase tablebase;
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @BeforeClass
+    public static void generate() throws IOException {
+        new TablebaseGenerator(folder.getRoot().toPath(), 3).generate();
+        tablebase = Tablebase.open(folder.getRoot().toPath());
+    }
+
+    /**
+     * Works out a position's result from its moves and the stored results of the positions they lead to
+     */
+    private static int expected(Game game) {
+        int[] moves = new int[Moves.MAX_MOVES];
+        int count = game.legalMoves(moves);
+        int quickestWin = Integer.MAX_VALUE;
+        int slowestLoss = 1;
+        boolean draw = false;
+        for (int i = 0; i < count; i++) {
+            game.makeMove(moves[i]);
+            int reply = game.count(game.turn.getColor()) == 0 ? 1 : tablebase.probe(game);
+            game.unmakeMove();
+            assertNotEquals(Tablebase.UNKNOWN, reply);
+            if (Tablebase.isLoss(reply)) {
+                quickestWin = Math.min(quickestWin, reply + 1);
+            } else if (Tablebase.isWin(reply)) {
+                slowestLoss = Math.max(slowestLoss, reply + 1);
+            } else {
+                draw = true;
+            }
+        }
+        return quickestWin != Integer.MAX_VALUE ? quickestWin : draw ? Tablebase.DRAW : slowestLoss;
+    }
+
+    @Test
+    public void randomPositionsConsistent() {
+        Random random = new Random(451);
+        Disk[] kinds = {RED_DISK, RED_KING, WHITE_DISK, WHITE_KING};
+        int checked = 0;
+        while (checked < 2000) {
+            Object[] squares = new Object[2 + 2 * random.nextInt(2)];
+            for (int i = 0; i < squares.length; i += 2) {
+                squares[i] = random.nextInt(Game.boardSize);
+                squares[i + 1] = kinds[random.nextInt(kinds.length)];
+            }
+            Game game = position(random.nextBoolean() ? redPlayer : whitePlayer, squares);
+            if (game.count(RED) + game.count(WHITE) != squares.length / 2 || game.count(RED) == 0
+                    || game.count(WHITE) == 0) {
+                continue;
+            }
+            assertEquals(game.toString(), expected(game), tablebase.probe(game));
+            checked++;
+        }
+    }
+
+    @Test
+    public void winInOne() {
+        Game game = position(redPlayer, 5, RED_DISK, 9, WHITE_DISK);
+        assertEquals(1, Tablebase.distance(tablebase.probe(game)));
+        assertTrue(Tablebase.isWin(tablebase.probe(game)));
+        assertEquals(redPlayer, tablebase.winner(game));
+        // Same position turned around, with white to move
+        game = position(whitePlayer, 26, WHITE_DISK, 22, RED_DISK);
+        assertTrue(Tablebase.isWin(tablebase.probe(game)));
+        assertEquals(whitePlayer, tablebase.winner(game));
+    }
+
+    @Test
+    public void noMovesIsLoss() {
+        // The white man in the corner on 28 can neither step to 24 nor jump to 21
+        Game game = position(whitePlayer, 28, WHITE_DISK, 24, RED_DISK, 21, RED_DISK);
+        assertEquals(0, Tablebase.distance(tablebase.probe(game)));
+        assertTrue(Tablebase.isLoss(tablebase.probe(game)));
+        assertEquals(redPlayer, tablebase.winner(game));
+    }
+
+    @Test
+    public void unknownPositions() {
+        Game start = new Game("test", redPlayer, whitePlayer, Game.newBoard(), redPlayer, new ArrayList<>());
+        assertEquals(Tablebase.UNKNOWN, tablebase.probe(start));
+        assertNull(tablebase.winner(start));
+        // Red is in the middle of a jump chain from 5 to 14
+        Game chain = new Game("test", redPlayer, whitePlayer, position(redPlayer, 14, RED_DISK, 18, WHITE_DISK).board,
+                redPlayer, new ArrayList<>(asList(5, 14)));
+        assertEquals(Tablebase.UNKNOWN, tablebase.probe(chain));
+    }
+
+    @Test
+    public void engineUsesTablebase() {
+        Random random = new Random(451);
+        Game game;
+        int result;
+        do {
+            game = position(redPlayer, random.nextInt(Game.boardSize), RED_KING, random.nextInt(Game.boardSize),
+                    RED_KING, random.nextInt(Game.boardSize), WHITE_DISK);
+            result = game.count(RED) + game.count(WHITE) == 3 ? tablebase.probe(game) : Tablebase.UNKNOWN;
+        } while (!Tablebase.isWin(result) || Tablebase.distance(result) < 5);
+        Engine engine = new Engine(1000, 1, null);
+        engine.setTablebase(tablebase);
+        SearchResult search = engine.search(game);
+        assertEquals(Engine.WIN - Tablebase.distance(result), search.getScore());
+        assertTrue(search.play(game).complete());
+        assertEquals(result - 1, tablebase.probe(game));
+    }
+
+    @Test
+    public void openRejectsForeignFile() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        Files.write(directory.resolve("1001.tb"), new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13});
+        thrown.expect(IOException.class);
+        Tablebase.open(directory);
+    }
+
+    @Test
+    public void invalidPieces() {
+        thrown.expect(IllegalArgumentException.class);
+        new TablebaseGenerator(folder.getRoot().toPath(), 1);
+    }
+}
@@ -0,0 +1,61 @@
+package game.ai;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class TournamentTest {
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void randomSelfPlay() throws InterruptedException {
+        Tournament.Results results = new Tournament("random", "random", 200, 451).play(200, 4);
+        assertEquals(200, results.getGames());
+        assertEquals(results.getGames(), results.getFirstWins() + results.getSecondWins() + results.getDraws());
+        assertEquals(results.getGames(), results.getRedWins() + results.getWhiteWins() + results.getDraws());
+        assertEquals(0, results.getAnomalyCount());
+        assertTrue(results.getMoves() > results.getGames());
+        assertTrue(results.gamesPerSecond() > 0);
+    }
+
+    @Test
+    public void repeatable() throws InterruptedException {
+        Tournament.Results one = new Tournament("random", "random", 200, 7).play(50, 1);
+        Tournament.Results two = new Tournament("random", "random", 200, 7).play(50, 3);
+        assertEquals(one.getMoves(), two.getMoves());
+        assertEquals(one.getFirstWins(), two.getFirstWins());
+        assertEquals(one.getDraws(), two.getDraws());
+    }
+
+    @Test
+    public void engineBeatsRandom() throws InterruptedException {
+        Tournament.Results results = new Tournament("depth:3", "random", 200, 451).play(20, 2);
+        assertEquals(0, results.getAnomalyCount());
+        assertTrue(results.toString(), results.getFirstWins() > results.getSecondWins());
+    }
+
+    @Test
+    public void plyLimitDraws() throws InterruptedException {
+        Tournament.Results results = new Tournament("random", "random", 1, 451).play(10, 1);
+        assertEquals(10, results.getDraws());
+        assertEquals(10, results.getMoves());
+    }
+
+    @Test
+    public void malformedContestant() {
+        thrown.expect(IllegalArgumentException.class);
+        new Tournament("random", "depth:x", 200, 451);
+    }
+
+    @Test
+    public void unknownContestant() {
+        thrown.expect(IllegalArgumentException.class);
+        new Tournament("minimax", "random", 200, 451);
+    }
+}
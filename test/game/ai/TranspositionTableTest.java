@@ -0,0 +1,109 @@
+package game.ai;
+
+import game.Game;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class TranspositionTableTest {
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void storeProbe() {
+        TranspositionTable table = new TranspositionTable(1);
+        table.store(12345L, 777, -1000001, 42, TranspositionTable.LOWER);
+        long entry = table.probe(12345L);
+        assertEquals(777, TranspositionTable.move(entry));
+        assertEquals(-1000001, TranspositionTable.score(entry));
+        assertEquals(42, TranspositionTable.depth(entry));
+        assertEquals(TranspositionTable.LOWER, TranspositionTable.bound(entry));
+        assertEquals(0, table.probe(54321L));
+        assertEquals(1, table.getHits());
+        assertEquals(1, table.getMisses());
+    }
+
+    @Test
+    public void capacity() {
+        TranspositionTable table = new TranspositionTable(3);
+        // 16 bytes an entry, rounded down to a power of two
+        assertEquals(1 << 17, table.capacity());
+    }
+
+    /**
+     * Keys that share a bucket: the shallowest entry goes first, and entries from older searches go before that
+     */
+    @Test
+    public void replacement() {
+        TranspositionTable table = new TranspositionTable(1);
+        long bucketStride = table.capacity() / 2;
+        table.store(1, 0, 0, 10, TranspositionTable.EXACT);
+        table.store(1 + bucketStride, 0, 0, 3, TranspositionTable.EXACT);
+        table.store(1 + 2 * bucketStride, 0, 0, 5, TranspositionTable.EXACT);
+        assertNotEquals(0, table.probe(1));
+        assertEquals(0, table.probe(1 + bucketStride));
+        assertNotEquals(0, table.probe(1 + 2 * bucketStride));
+        assertEquals(1, table.getCollisions());
+
+        table.newSearch();
+        table.store(1 + 3 * bucketStride, 0, 0, 1, TranspositionTable.EXACT);
+        assertEquals(0, table.probe(1 + 2 * bucketStride));
+        assertNotEquals(0, table.probe(1));
+        // Same position overwrites in place
+        table.store(1, 5, 0, 1, TranspositionTable.EXACT);
+        assertEquals(5, TranspositionTable.move(table.probe(1)));
+        assertEquals(2, table.getCollisions());
+    }
+
+    /**
+     * Searches running at once share an age, so neither makes the other's entries look old
+     */
+    @Test
+    public void overlappingSearchesShareAge() {
+        TranspositionTable table = new TranspositionTable(1);
+        long bucketStride = table.capacity() / 2;
+        table.newSearch();
+        table.store(1, 0, 0, 10, TranspositionTable.EXACT);
+        table.newSearch();
+        table.store(1 + bucketStride, 0, 0, 3, TranspositionTable.EXACT);
+        table.store(1 + 2 * bucketStride, 0, 0, 5, TranspositionTable.EXACT);
+        // Same age, so the shallower entry went rather than the first search's deep one
+        assertNotEquals(0, table.probe(1));
+        assertEquals(0, table.probe(1 + bucketStride));
+
+        // Once both are done, the next search starts a new age and replaces their entries first, however deep
+        table.endSearch();
+        table.endSearch();
+        table.newSearch();
+        table.store(1 + 3 * bucketStride, 0, 0, 1, TranspositionTable.EXACT);
+        table.store(1 + 4 * bucketStride, 0, 0, 2, TranspositionTable.EXACT);
+        assertEquals(0, table.probe(1));
+        assertNotEquals(0, table.probe(1 + 3 * bucketStride));
+        assertNotEquals(0, table.probe(1 + 4 * bucketStride));
+        table.endSearch();
+    }
+
+    @Test
+    public void engineUsesTable() {
+        TranspositionTable table = new TranspositionTable(16);
+        Game start = new Game("test", EngineTest.redPlayer, EngineTest.whitePlayer, Game.newBoard(),
+                EngineTest.redPlayer, new ArrayList<>());
+        SearchResult result = new Engine(10000, 8, table).search(start);
+        assertEquals(8, result.getDepth());
+        assertTrue(table.getHits() > 0);
+        assertTrue(result.play(start).complete());
+    }
+
+    @Test
+    public void tooSmall() {
+        thrown.expect(IllegalArgumentException.class);
+        new TranspositionTable(0);
+    }
+}
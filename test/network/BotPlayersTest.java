@@ -0,0 +1,127 @@
+package network;
+
+import game.Game;
+import game.Player;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static game.Color.RED;
+import static game.Color.WHITE;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class BotPlayersTest {
+    private static Player human = new Player("human", RED);
+    private static Player bot = new Player("computer-easy", WHITE);
+
+    private final Map<String, Game> games = new ConcurrentHashMap<>();
+    private BotPlayers bots;
+    private CountDownLatch saved;
+    private Client client;
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Before
+    public void setUp() {
+        // No user logged in, as on the server. Game.move() checks the logged-in user, which other tests may have set.
+        client = Client.client;
+        Client.client = new Client();
+        saved = new CountDownLatch(1);
+        bots = new BotPlayers(1, 1, games::get, game -> {
+            games.put(game.name, game);
+            saved.countDown();
+        });
+    }
+
+    @After
+    public void tearDown() {
+        bots.shutdown();
+        Client.client = client;
+    }
+
+    private Game botToMove(String name) {
+        Game game = new Game(name, human, bot, Game.newBoard(), human, new ArrayList<>());
+        assertTrue(game.move(8, 12).complete());
+        games.put(name, game);
+        return game;
+    }
+
+    @Test
+    public void botNames() {
+        assertTrue(BotPlayers.isBot("computer"));
+        assertFalse(BotPlayers.isBot("human"));
+        assertFalse(BotPlayers.isBot(null));
+        assertEquals(asList("computer-easy", "computer", "computer-hard"), BotPlayers.matching("comp"));
+        assertTrue(BotPlayers.matching("x").isEmpty());
+    }
+
+    @Test
+    public void botMovesOnItsTurn() throws InterruptedException {
+        Game game = botToMove("botgame");
+        assertTrue(bots.schedule(game));
+        assertTrue(saved.await(10, TimeUnit.SECONDS));
+        Game after = games.get("botgame");
+        assertEquals(human, after.turn);
+        assertEquals(WHITE, after.getDisk(after.getLastMove().get(after.getLastMove().size() - 1)).getColor());
+        assertEquals(1, bots.getCompleted());
+        assertTrue(bots.maxThinkMillis() > 0);
+    }
+
+    @Test
+    public void humanTurnIgnored() {
+        Game game = new Game("humangame", human, bot, Game.newBoard(), human, new ArrayList<>());
+        assertTrue(bots.schedule(game));
+        assertEquals(0, bots.getSubmitted());
+    }
+
+    @Test
+    public void fullQueueRejects() throws InterruptedException {
+        // One worker busy, one move queued, the third is turned away
+        CountDownLatch release = new CountDownLatch(1);
+        BotPlayers blocked = new BotPlayers(1, 1, name -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }, game -> {
+        });
+        try {
+            assertTrue(blocked.schedule(botToMove("first")));
+            while (blocked.active() == 0) {
+                Thread.sleep(1);
+            }
+            assertTrue(blocked.schedule(botToMove("second")));
+            // Already queued, so not queued again
+            assertTrue(blocked.schedule(games.get("second")));
+            assertFalse(blocked.schedule(botToMove("third")));
+            assertEquals(1, blocked.queueDepth());
+            assertEquals(2, blocked.getSubmitted());
+            assertEquals(1, blocked.getRejected());
+        } finally {
+            release.countDown();
+            blocked.shutdown();
+        }
+    }
+
+    @Test
+    public void invalidPool() {
+        thrown.expect(IllegalArgumentException.class);
+        new BotPlayers(0, 1, games::get, game -> {
+        });
+    }
+}
@@ -0,0 +1,129 @@
+package network;
+
+import network.messages.Ack;
+import network.messages.Packet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class ConnectionTest {
+    private ServerSocket server;
+    private Connection connection;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        connection = new Connection(() -> new Socket(InetAddress.getLoopbackAddress(), server.getLocalPort()));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        connection.close();
+        server.close();
+    }
+
+    /**
+     * Accepts one client, reads a number of requests and answers them last first, each with its request's message
+     */
+    private Thread answerInReverse(int requests) {
+        Thread thread = new Thread(() -> {
+            try (Socket socket = server.accept()) {
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+                PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+                List<Packet> received = new ArrayList<>();
+                for (int i = 0; i < requests; i++) {
+                    received.add(Packet.fromJson(in.readLine()));
+                }
+                for (int i = requests - 1; i >= 0; i--) {
+                    Packet request = received.get(i);
+                    out.write(new Packet("token", request.getData(), request.getId()).toJson() + "\n");
+                }
+                out.flush();
+                // Hold the socket until the client is done
+                in.readLine();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    @Test
+    public void outOfOrderResponsesMatched() throws InterruptedException {
+        answerInReverse(3);
+        Map<String, String> answers = new ConcurrentHashMap<>();
+        CountDownLatch done = new CountDownLatch(3);
+        for (String name : new String[]{"first", "second", "third"}) {
+            connection.send("", new Ack(name, true), packet -> {
+                answers.put(name, ((Ack) packet.getData()).getMessage());
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals("first", answers.get("first"));
+        assertEquals("second", answers.get("second"));
+        assertEquals("third", answers.get("third"));
+        assertEquals(0, connection.pending());
+    }
+
+    @Test
+    public void dropFailsPending() throws InterruptedException {
+        Thread hangUp = new Thread(() -> {
+            try (Socket socket = server.accept()) {
+                new BufferedReader(new InputStreamReader(socket.getInputStream())).readLine();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+        hangUp.start();
+        CountDownLatch done = new CountDownLatch(1);
+        Packet[] answer = new Packet[1];
+        connection.send("", new Ack("lost", true), packet -> {
+            answer[0] = packet;
+            done.countDown();
+        });
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        Ack ack = (Ack) answer[0].getData();
+        assertFalse(ack.getSuccess());
+        assertEquals("Could not connect", ack.getMessage());
+
+        // The next request opens a new socket
+        answerInReverse(1);
+        CountDownLatch again = new CountDownLatch(1);
+        connection.send("", new Ack("again", true), packet -> again.countDown());
+        assertTrue(again.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void unreachableServer() throws IOException, InterruptedException {
+        server.close();
+        CountDownLatch done = new CountDownLatch(1);
+        connection.send("", new Ack("nobody", true), packet -> {
+            assertFalse(((Ack) packet.getData()).getSuccess());
+            done.countDown();
+        });
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        // A missing callback is not an error
+        connection.send("", new Ack("nobody", true), null);
+    }
+}
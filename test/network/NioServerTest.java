@@ -0,0 +1,242 @@
+package network;
+
+import network.messages.Ack;
+import network.messages.Packet;
+import org.junit.After;
+import org.junit.Test;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class NioServerTest {
+    private NioServer server;
+    private RequestExecutor requests = new RequestExecutor(2, 16);
+
+    @After
+    public void tearDown() {
+        if (server != null) {
+            server.close();
+        }
+        requests.shutdown();
+    }
+
+    /**
+     * TLS settings with the self-signed test key, which the client side also trusts
+     */
+    static TlsConfig testConfig() {
+        Properties properties = new Properties();
+        properties.setProperty("checkers.tls.keyStore", "test/network/test.jks");
+        properties.setProperty("checkers.tls.trustStore", "test/network/test.jks");
+        return new TlsConfig(properties);
+    }
+
+    private NioServer start(TlsConfig tls) throws IOException {
+        server = new NioServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), tls, 2, requests);
+        return server;
+    }
+
+    private Socket plain() throws IOException {
+        return new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+    }
+
+    private static String ack(String message, long id) {
+        return new Packet("token", new Ack(message, true), id).toJson();
+    }
+
+    /**
+     * Sends lines and reads as many responses
+     */
+    private static List<Packet> exchange(Socket socket, String... lines) throws IOException {
+        PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                StandardCharsets.UTF_8));
+        StringBuilder all = new StringBuilder();
+        for (String line : lines) {
+            all.append(line).append('\n');
+        }
+        // One write, so the server sees the requests pipelined
+        out.write(all.toString());
+        out.flush();
+        List<Packet> responses = new ArrayList<>();
+        for (int i = 0; i < lines.length; i++) {
+            responses.add(Packet.fromJson(in.readLine()));
+        }
+        return responses;
+    }
+
+    @Test
+    public void plainRoundTrip() throws IOException {
+        start(null);
+        try (Socket socket = plain()) {
+            Packet response = exchange(socket, ack("hello", 7)).get(0);
+            assertEquals(7, response.getId());
+            assertEquals("hello", ((Ack) response.getData()).getMessage());
+            // Same connection, next request
+            assertEquals(8, exchange(socket, ack("again", 8)).get(0).getId());
+        }
+    }
+
+    @Test
+    public void pipelinedInOrder() throws IOException {
+        start(null);
+        String[] lines = new String[50];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = ack("request " + i, i + 1);
+        }
+        try (Socket socket = plain()) {
+            List<Packet> responses = exchange(socket, lines);
+            for (int i = 0; i < lines.length; i++) {
+                assertEquals(i + 1, responses.get(i).getId());
+            }
+        }
+    }
+
+    @Test
+    public void unparsableLine() throws IOException {
+        start(null);
+        try (Socket socket = plain()) {
+            Ack ack = (Ack) exchange(socket, "not json").get(0).getData();
+            assertFalse(ack.getSuccess());
+            assertTrue(ack.getMessage().startsWith("Could not parse"));
+        }
+    }
+
+    @Test
+    public void missingDataKeepsId() throws IOException {
+        start(null);
+        try (Socket socket = plain()) {
+            Packet response = exchange(socket, "{\"token\":\"token\",\"type\":\"Ack\",\"id\":9}").get(0);
+            assertEquals(9, response.getId());
+            assertTrue(((Ack) response.getData()).getMessage().startsWith("Could not parse"));
+        }
+    }
+
+    @Test
+    public void tlsRoundTrip() throws IOException {
+        TlsConfig config = testConfig();
+        start(config);
+        SSLContext context = config.clientContext();
+        try (SSLSocket socket = (SSLSocket) context.getSocketFactory().createSocket(InetAddress.getLoopbackAddress(),
+                server.getPort())) {
+            Packet response = exchange(socket, ack("secret", 3), ack("secret", 4)).get(1);
+            assertEquals(4, response.getId());
+            assertEquals("secret", ((Ack) response.getData()).getMessage());
+        }
+    }
+
+    @Test
+    public void legacyClientCipher() throws IOException {
+        TlsConfig config = testConfig();
+        start(config);
+        SSLContext context = config.clientContext();
+        try (SSLSocket socket = (SSLSocket) context.getSocketFactory().createSocket(InetAddress.getLoopbackAddress(),
+                server.getPort())) {
+            socket.setEnabledProtocols(new String[]{"TLSv1.2"});
+            socket.setEnabledCipherSuites(new String[]{"TLS_RSA_WITH_AES_128_CBC_SHA"});
+            assertEquals(1, exchange(socket, ack("legacy", 1)).get(0).getId());
+        }
+    }
+
+    @Test
+    public void brokenTlsKeepsLoop() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("checkers.tls.keyStore", "test/network/test.jks");
+        properties.setProperty("checkers.tls.cipherSuites", "TLS_NO_SUCH_SUITE");
+        properties.setProperty("checkers.tls.legacyClients", "false");
+        server = new NioServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), new TlsConfig(properties),
+                1, requests);
+        for (int i = 0; i < 2; i++) {
+            try (Socket socket = plain()) {
+                socket.setSoTimeout(10000);
+                // Each connection is dropped, and the loop lives on to accept the next
+                assertEquals(-1, socket.getInputStream().read());
+            }
+        }
+        assertEquals(0, server.connections());
+    }
+
+    @Test
+    public void tlsLargeResponse() throws IOException {
+        TlsConfig config = testConfig();
+        start(config);
+        SSLContext context = config.clientContext();
+        StringBuilder big = new StringBuilder();
+        while (big.length() < 200000) {
+            big.append("checkers ");
+        }
+        try (SSLSocket socket = (SSLSocket) context.getSocketFactory().createSocket(InetAddress.getLoopbackAddress(),
+                server.getPort())) {
+            Packet response = exchange(socket, ack(big.toString(), 5)).get(0);
+            assertEquals(big.toString(), ((Ack) response.getData()).getMessage());
+        }
+    }
+
+    @Test
+    public void persistentClient() throws IOException, InterruptedException {
+        TlsConfig config = testConfig();
+        start(config);
+        SSLContext context = config.clientContext();
+        Connection connection = new Connection(() -> context.getSocketFactory().createSocket(
+                InetAddress.getLoopbackAddress(), server.getPort()));
+        try {
+            CountDownLatch done = new CountDownLatch(10);
+            for (int i = 0; i < 10; i++) {
+                String name = "request " + i;
+                connection.send("", new Ack(name, true), packet -> {
+                    if (((Ack) packet.getData()).getMessage().equals(name)) {
+                        done.countDown();
+                    }
+                });
+            }
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            assertEquals(1, server.connections());
+        } finally {
+            connection.close();
+        }
+    }
+
+    @Test
+    public void manyIdleConnections() throws IOException, InterruptedException {
+        start(null);
+        int threadsBefore = Thread.activeCount();
+        List<Socket> sockets = new ArrayList<>();
+        try {
+            for (int i = 0; i < 500; i++) {
+                sockets.add(plain());
+            }
+            for (int wait = 0; wait < 1000 && server.connections() < 500; wait++) {
+                Thread.sleep(10);
+            }
+            assertEquals(500, server.connections());
+            // Connections do not get a thread each
+            assertTrue(Thread.activeCount() < threadsBefore + 10);
+            assertEquals(451, exchange(sockets.get(499), ack("last", 451)).get(0).getId());
+        } finally {
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+        }
+        for (int wait = 0; wait < 1000 && server.connections() > 0; wait++) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, server.connections());
+    }
+}
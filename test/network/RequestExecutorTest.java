@@ -0,0 +1,104 @@
+package network;
+
+import network.messages.Ack;
+import network.messages.Packet;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class RequestExecutorTest {
+    private RequestExecutor requests = new RequestExecutor(1, 1);
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @After
+    public void tearDown() {
+        requests.shutdown();
+    }
+
+    private static String request(long id) {
+        return new Packet("token", new Ack("request", true), id).toJson();
+    }
+
+    private static Ack ack(String json) {
+        return (Ack) Packet.fromJson(json).getData();
+    }
+
+    @Test
+    public void callAnswers() throws InterruptedException {
+        assertEquals("answer", requests.call(request(1), () -> "answer"));
+        assertEquals(1, requests.getSubmitted());
+        assertEquals(1, requests.getCompleted());
+        assertEquals(0, requests.getRejected());
+        assertTrue(requests.percentileMillis(99) > 0);
+    }
+
+    @Test
+    public void fullQueueRejects() throws InterruptedException {
+        // One worker busy, one request queued, the third is turned away
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        requests.execute(request(1), () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "first";
+        }, output -> {
+        });
+        started.await();
+        requests.execute(request(2), () -> "second", output -> {
+        });
+        String[] turnedAway = new String[1];
+        requests.execute(request(3), () -> "third", output -> turnedAway[0] = output);
+        try {
+            // Answered at once on this thread
+            assertNotNull(turnedAway[0]);
+            assertEquals(3, Packet.fromJson(turnedAway[0]).getId());
+            assertEquals("Server busy", ack(turnedAway[0]).getMessage());
+            assertFalse(ack(turnedAway[0]).getSuccess());
+            assertEquals(1, requests.queueDepth());
+            assertEquals(1, requests.active());
+            assertEquals(2, requests.getSubmitted());
+            assertEquals(1, requests.getRejected());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void failureAnswered() throws InterruptedException {
+        String output = requests.call(request(1), () -> {
+            throw new IllegalStateException("broken");
+        });
+        assertTrue(ack(output).getMessage().startsWith("Server error"));
+    }
+
+    @Test
+    public void busyResponseKeepsId() {
+        assertEquals(12, Packet.fromJson(RequestExecutor.busyResponse(request(12))).getId());
+        assertEquals(0, Packet.fromJson(RequestExecutor.busyResponse("not json")).getId());
+    }
+
+    @Test
+    public void percentileWithoutRequests() {
+        assertEquals(0, requests.percentileMillis(99), 0);
+    }
+
+    @Test
+    public void invalidPool() {
+        thrown.expect(IllegalArgumentException.class);
+        new RequestExecutor(1, 0);
+    }
+}
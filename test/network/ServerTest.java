@@ -0,0 +1,67 @@
+package network;
+
+import network.messages.Ack;
+import network.messages.Packet;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeNotNull;
+
+/**
+ *
+ */
+public class ServerTest {
+    /**
+     * Serves a plain listener with a handler and makes two requests on one connection
+     */
+    private static void roundTrip(Consumer<ServerThread> handler) throws IOException, InterruptedException {
+        ServerSocket listener = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(() -> {
+            try {
+                Server.serve(listener, handler);
+            } catch (IOException e) {
+                // Closed below
+            }
+        });
+        acceptor.start();
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), listener.getLocalPort())) {
+            PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            for (long id = 1; id <= 2; id++) {
+                out.write(new Packet("", new Ack("ping", true), id).toJson() + "\n");
+                out.flush();
+                assertEquals(id, Packet.fromJson(in.readLine()).getId());
+            }
+        } finally {
+            listener.close();
+            acceptor.join();
+        }
+    }
+
+    @Test
+    public void platformThreads() throws IOException, InterruptedException {
+        roundTrip(ServerThread::start);
+    }
+
+    @Test
+    public void virtualThreads() throws IOException, InterruptedException {
+        // Only on Java 21 and up, skipped on older JVMs
+        ExecutorService executor = Server.virtualThreadExecutor();
+        assumeNotNull(executor);
+        try {
+            roundTrip(executor::execute);
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package network;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import javax.net.ssl.SSLHandshakeException;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class TlsConfigTest {
+    private SSLServerSocket listener;
+    private Thread acceptor;
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @After
+    public void tearDown() throws IOException, InterruptedException {
+        if (listener != null) {
+            listener.close();
+            acceptor.join();
+        }
+    }
+
+    private static TlsConfig config(String... settings) {
+        Properties properties = new Properties();
+        properties.setProperty("checkers.tls.keyStore", "test/network/test.jks");
+        properties.setProperty("checkers.tls.trustStore", "test/network/test.jks");
+        for (int i = 0; i < settings.length; i += 2) {
+            properties.setProperty("checkers.tls." + settings[i], settings[i + 1]);
+        }
+        return new TlsConfig(properties);
+    }
+
+    /**
+     * Listens with a config and completes the handshake with every client, until closed
+     */
+    private void listen(TlsConfig server) throws IOException {
+        listener = server.serverSocket(0);
+        acceptor = new Thread(() -> {
+            while (true) {
+                try (SSLSocket socket = (SSLSocket) listener.accept()) {
+                    socket.startHandshake();
+                    InputStream in = socket.getInputStream();
+                    while (in.read() >= 0) {
+                        // Wait for the client to hang up
+                    }
+                } catch (SSLHandshakeException e) {
+                    // The client's problem, which the test checks
+                } catch (IOException e) {
+                    if (listener.isClosed()) {
+                        return;
+                    }
+                }
+            }
+        });
+        acceptor.start();
+    }
+
+    private SSLSession connect(TlsConfig client) throws IOException {
+        try (SSLSocket socket = client.clientSocket("localhost", listener.getLocalPort())) {
+            socket.startHandshake();
+            return socket.getSession();
+        }
+    }
+
+    @Test
+    public void defaults() {
+        TlsConfig config = new TlsConfig(new Properties());
+        assertTrue(config.isResumption());
+        assertTrue(config.toString().contains("keyStore='keystore.jks'"));
+        assertTrue(config.toString().contains("trustStore='client.jks'"));
+    }
+
+    @Test
+    public void negotiatesTls13Gcm() throws IOException {
+        TlsConfig config = config();
+        listen(config);
+        SSLSession session = connect(config);
+        assertEquals("TLSv1.3", session.getProtocol());
+        assertEquals("TLS_AES_128_GCM_SHA256", session.getCipherSuite());
+    }
+
+    @Test
+    public void legacyClientAccepted() throws IOException {
+        listen(config());
+        TlsConfig legacy = config("protocols", "TLSv1.2", "cipherSuites", TlsConfig.LEGACY_CIPHER_SUITE);
+        assertEquals(TlsConfig.LEGACY_CIPHER_SUITE, connect(legacy).getCipherSuite());
+    }
+
+    @Test
+    public void legacyClientRefused() throws IOException {
+        listen(config("legacyClients", "false"));
+        TlsConfig legacy = config("protocols", "TLSv1.2", "cipherSuites", TlsConfig.LEGACY_CIPHER_SUITE);
+        thrown.expect(IOException.class);
+        connect(legacy);
+    }
+
+    @Test
+    public void sessionResumed() throws IOException {
+        listen(config());
+        // TLS 1.2 keeps the session ID when resuming, which makes resumption easy to see
+        TlsConfig client = config("protocols", "TLSv1.2");
+        byte[] first = connect(client).getId();
+        assertArrayEquals(first, connect(client).getId());
+    }
+
+    @Test
+    public void resumptionOff() throws IOException {
+        listen(config());
+        TlsConfig client = config("protocols", "TLSv1.2", "resumption", "false");
+        assertFalse(Arrays.equals(connect(client).getId(), connect(client).getId()));
+    }
+
+    @Test
+    public void unsupportedSuitesIgnored() throws IOException {
+        TlsConfig config = config("cipherSuites", "TLS_NO_SUCH_SUITE," + TlsConfig.DEFAULT_CIPHER_SUITES);
+        listen(config);
+        assertEquals("TLS_AES_128_GCM_SHA256", connect(config).getCipherSuite());
+    }
+
+    @Test
+    public void noSupportedSuites() throws IOException {
+        TlsConfig config = config("cipherSuites", "TLS_NO_SUCH_SUITE");
+        try {
+            config.clientContext();
+            fail("First call accepted unsupported suites");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+        thrown.expect(IllegalStateException.class);
+        config.clientContext();
+    }
+
+    @Test
+    public void noSupportedServerSuitesEveryTime() throws IOException {
+        TlsConfig config = config("cipherSuites", "TLS_NO_SUCH_SUITE", "legacyClients", "false");
+        try {
+            config.serverContext();
+            fail("First call accepted unsupported suites");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+        thrown.expect(IllegalStateException.class);
+        config.serverContext();
+    }
+
+    @Test
+    public void missingKeystore() throws IOException {
+        thrown.expect(IOException.class);
+        config("keyStore", "no-such.jks").serverContext();
+    }
+
+    @Test
+    public void malformedNumber() {
+        thrown.expect(IllegalArgumentException.class);
+        config("sessionTimeout", "forever");
+    }
+}
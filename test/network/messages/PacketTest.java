@@ -6,6 +6,7 @@ import org.junit.Test;
 import java.util.UUID;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 
 /**
@@ -98,5 +99,17 @@ public class PacketTest {
         assertEquals(resultTrue.getData(), testTrue.getData());
 
     }
-}
 
+    @Test
+    public void requestId() throws Exception {
+        Packet withId = new Packet(token, new Ack("foo", true), 451);
+        Packet result = Packet.fromJson(withId.toJson());
+        assertNotNull(result);
+        assertEquals(451, result.getId());
+
+        // One-shot packets carry no ID at all, as before
+        Packet withoutId = new Packet(token, new Ack("foo", true));
+        assertFalse(withoutId.toJson().contains("\"id\""));
+        assertEquals(0, Packet.fromJson(withoutId.toJson()).getId());
+    }
+}